@@ -0,0 +1,62 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+
+/**
+ * EwtsConverter.toUnicodeBatch() on 1024 titles, compared with calling
+ * toUnicode() on each of them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+    private final EwtsConverter converter = new EwtsConverter();
+    private List<String> titles;
+    private int length = 0;
+
+    @Setup
+    public void setup() {
+        final String[] some = Corpus.inputs(Corpus.TITLE, Corpus.EWTS);
+        final String[] all = new String[1024];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = some[i % some.length];
+            length += all[i].length();
+        }
+        titles = Arrays.asList(all);
+    }
+
+    @Benchmark
+    public List<String> toUnicodeLoop(final Chars chars) {
+        chars.chars += length;
+        final List<String> res = new ArrayList<String>(titles.size());
+        for (final String title : titles)
+            res.add(converter.toUnicode(title, new ArrayList<String>(), true, false));
+        return res;
+    }
+
+    @Benchmark
+    public List<String> toUnicodeBatch(final Chars chars) {
+        chars.chars += length;
+        return converter.toUnicodeBatch(titles, new ArrayList<List<String>>(), true, false);
+    }
+}
@@ -0,0 +1,87 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+import io.bdrc.ewtsconverter.TsekbarCache;
+
+/**
+ * The caller-owned buffer overloads of toUnicode() and toWylie(), from a char[]
+ * to a reused char[], compared with the String versions on the same inputs and
+ * the same converter (with a TsekbarCache). Run with -prof gc to see that the
+ * buffer versions allocate nothing once the cache is warm.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BufferBenchmark {
+
+    @Param({ Corpus.TITLE, Corpus.PAGE })
+    public String size;
+
+    private final EwtsConverter converter = new EwtsConverter(true, true, false, true, EwtsConverter.Mode.EWTS,
+            new TsekbarCache(4096));
+    private String[] ewts, unicode;
+    private char[][] ewtsChars, unicodeChars;
+    private char[] out;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        ewts = Corpus.inputs(size, Corpus.EWTS);
+        unicode = Corpus.inputs(size, Corpus.UNICODE);
+        ewtsChars = new char[ewts.length][];
+        unicodeChars = new char[unicode.length][];
+        int max = 0;
+        for (int i = 0; i < ewts.length; i++) {
+            ewtsChars[i] = ewts[i].toCharArray();
+            unicodeChars[i] = unicode[i].toCharArray();
+            max = Math.max(max, Math.max(ewts[i].length(), unicode[i].length()));
+        }
+        // the Wylie of a text can be longer than its Unicode
+        out = new char[max * 4];
+    }
+
+    @Benchmark
+    public String toUnicodeString(final Chars chars) {
+        final String in = ewts[next++ % ewts.length];
+        chars.chars += in.length();
+        return converter.toUnicode(in, null, false, false);
+    }
+
+    @Benchmark
+    public int toUnicodeBuffer(final Chars chars) {
+        final char[] in = ewtsChars[next++ % ewtsChars.length];
+        chars.chars += in.length;
+        return converter.toUnicode(in, 0, in.length, out, 0, false, false, null);
+    }
+
+    @Benchmark
+    public String toWylieString(final Chars chars) {
+        final String in = unicode[next++ % unicode.length];
+        chars.chars += in.length();
+        return converter.toWylie(in, null, true);
+    }
+
+    @Benchmark
+    public int toWylieBuffer(final Chars chars) {
+        final char[] in = unicodeChars[next++ % unicodeChars.length];
+        chars.chars += in.length;
+        return converter.toWylie(in, 0, in.length, out, 0, true, null);
+    }
+}
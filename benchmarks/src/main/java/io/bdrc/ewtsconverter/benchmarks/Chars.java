@@ -0,0 +1,23 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the input chars converted by a benchmark, so that JMH reports them as
+ * a secondary result in chars per second next to the operations per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Chars {
+
+    public long chars;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        chars = 0;
+    }
+}
@@ -0,0 +1,84 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.Main;
+
+/**
+ * The time of a whole run of the command line converter on a short title, as
+ * paid by scripts that call it for each string: in a new JVM, or as a native
+ * executable. The JVM runs the jar that has the Main class (the library jar if
+ * it is given with -Dcli.jar), the native executable is the one built by
+ * <code>mvn -Pnative package</code> in the parent directory (or given with
+ * -Dcli.native):
+ *
+ * <pre>
+ * java -Dcli.jar=../target/ewts-converter-1.7.0.jar -jar target/benchmarks.jar CliStartup
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CliStartupBenchmark {
+
+    private static final byte[] INPUT = "bla ma'i rnal 'byor\n".getBytes(StandardCharsets.UTF_8);
+
+    @Param({ "jvm", "native" })
+    public String launcher;
+
+    private ProcessBuilder builder;
+    private final byte[] buffer = new byte[4096];
+
+    @Setup
+    public void setup() throws Exception {
+        if (launcher.equals("jvm")) {
+            String jar = System.getProperty("cli.jar");
+            if (jar == null)
+                jar = new File(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            builder = new ProcessBuilder(System.getProperty("java.home") + "/bin/java", "-cp", jar,
+                    "io.bdrc.ewtsconverter.Main");
+        } else {
+            final File exe = new File(System.getProperty("cli.native", "../target/ewts-converter"));
+            if (!exe.canExecute())
+                throw new IllegalStateException(exe + " not found, build it with mvn -Pnative package");
+            builder = new ProcessBuilder(exe.getPath());
+        }
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+    }
+
+    @Benchmark
+    public int convert() throws IOException, InterruptedException {
+        final Process p = builder.start();
+        try (OutputStream in = p.getOutputStream()) {
+            in.write(INPUT);
+        }
+        int read = 0, n;
+        try (InputStream out = p.getInputStream()) {
+            while ((n = out.read(buffer)) >= 0)
+                read += n;
+        }
+        if (p.waitFor() != 0 || read == 0)
+            throw new IllegalStateException("the converter failed");
+        return read;
+    }
+}
@@ -0,0 +1,54 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+import io.bdrc.ewtsconverter.TransConverter;
+
+/**
+ * The time to the first conversion in a new JVM, class loading and
+ * initialization of the tables included, as paid by short-lived command line
+ * or serverless invocations. Each benchmark runs once in each fork, so the
+ * inputs are literals: the benchmark must be the first to use the classes of
+ * the library.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1, batchSize = 1)
+@Fork(20)
+public class ColdStartBenchmark {
+
+    @Benchmark
+    public boolean isCombining() {
+        return EwtsConverter.isCombining('ི');
+    }
+
+    @Benchmark
+    public String toUnicode() {
+        return new EwtsConverter().toUnicode("bla ma'i rnal 'byor");
+    }
+
+    @Benchmark
+    public String toWylie() {
+        return new EwtsConverter().toWylie("བླ་མའི་རྣལ་འབྱོར");
+    }
+
+    @Benchmark
+    public String dtsToUnicode() {
+        return new EwtsConverter(true, true, false, true, EwtsConverter.Mode.DTS).toUnicode("bla-maḥi-rnal-ḥbyor");
+    }
+
+    @Benchmark
+    public String ewtsToAlalc() {
+        return TransConverter.ewtsToAlalc("bla ma'i rnal 'byor", true);
+    }
+}
@@ -0,0 +1,104 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.Random;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+import io.bdrc.ewtsconverter.TransConverter;
+
+/**
+ * The inputs of the benchmarks: the same pseudo-random Tibetan text in EWTS,
+ * DTS, ALA-LC and Unicode, in three sizes. Always generated from the same seed,
+ * so that results can be compared between runs.
+ */
+public final class Corpus {
+
+    /** Short strings like titles (16 of them, used in turn), a page, or a 4 MB text. */
+    public static final String TITLE = "title", PAGE = "page", TEXT = "text";
+
+    /** The encodings of the inputs. */
+    public static final String EWTS = "EWTS", DTS = "DTS", ALALC = "ALALC", UNICODE = "UNICODE";
+
+    private static final String[] WORDS = { "bka'", "'gyur", "bstan", "rgyud", "sde", "spyi'i", "rnam", "gzhag",
+            "sangs", "rgyas", "kyi", "zhing", "bkod", "pa", "bla", "ma'i", "rnal", "'byor", "dpal", "ldan", "'brug",
+            "chos", "'byung", "'jam", "dbyangs", "mkhyen", "brtse'i", "dbang", "po", "gsung", "'bum", "mdo", "sngags",
+            "lam", "rim", "bsgrubs", "bkra", "shis", "bde", "legs", "thams", "cad", "la", "phyag", "'tshal", "lo",
+            "byang", "chub", "sems", "dpa'", "rgyal", "ba'i", "rab", "ston", "dam", "rin", "che'i", "gter", "ye",
+            "shes", "sku", "de", "bzhin", "gshegs", "oM", "ma", "Ni", "pad+me", "hU~M", "g.yung", "drung", "nyid" };
+
+    private Corpus() {
+    }
+
+    /**
+     * @param size
+     *            TITLE, PAGE or TEXT
+     * @param encoding
+     *            EWTS, DTS, ALALC or UNICODE
+     * @return the inputs of that size in that encoding: 16 titles, or a single
+     *         page or text
+     */
+    public static String[] inputs(final String size, final String encoding) {
+        final String[] res = ewts(size);
+        for (int i = 0; i < res.length; i++)
+            res[i] = encode(res[i], encoding);
+        return res;
+    }
+
+    private static String[] ewts(final String size) {
+        final Random random = new Random(42);
+        if (TITLE.equals(size)) {
+            final String[] res = new String[16];
+            for (int i = 0; i < res.length; i++)
+                res[i] = text(random, 2 + random.nextInt(6), false);
+            return res;
+        }
+        final int chars = PAGE.equals(size) ? 2000 : 4 << 20;
+        final StringBuilder sb = new StringBuilder(chars + 100);
+        while (sb.length() < chars) {
+            sb.append(text(random, 8 + random.nextInt(12), true));
+            sb.append('\n');
+        }
+        return new String[] { sb.toString() };
+    }
+
+    // a line of words, with shads between sentences if punctuated
+    private static String text(final Random random, final int words, final boolean punctuated) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0)
+                sb.append(punctuated && random.nextInt(6) == 0 ? "/ " : " ");
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (punctuated)
+            sb.append(random.nextInt(3) == 0 ? "//" : "/");
+        return sb.toString();
+    }
+
+    private static String encode(final String ewts, final String encoding) {
+        switch (encoding) {
+        case EWTS:
+            return ewts;
+        case UNICODE:
+            return new EwtsConverter().toUnicode(ewts);
+        case ALALC:
+        case DTS:
+            // ewtsToAlalc() removes newlines, so convert line by line
+            final StringBuilder sb = new StringBuilder(ewts.length() + ewts.length() / 8);
+            final String[] lines = ewts.split("\n", -1);
+            for (int i = 0; i < lines.length; i++) {
+                final String line = lines[i];
+                if (i > 0)
+                    sb.append('\n');
+                final String alalc = TransConverter.ewtsToAlalc(line, false);
+                if (encoding.equals(ALALC))
+                    sb.append(alalc);
+                else
+                    // DTS differs from ALA-LC by a few letters and the hyphens between syllables
+                    sb.append(alalc.replace("sh", "ś").replace("zh", "ź").replace("ny", "ñ").replace("ng", "ṅ")
+                            .replace("ʼ", "ḥ").replace(' ', '-'));
+            }
+            return sb.toString();
+        default:
+            throw new IllegalArgumentException("unknown encoding: " + encoding);
+        }
+    }
+}
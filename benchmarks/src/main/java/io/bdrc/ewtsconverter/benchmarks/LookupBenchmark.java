@@ -0,0 +1,88 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+
+/**
+ * The lookups of toWylie() in its Unicode to EWTS tables, in a
+ * HashMap<Character, String> and in a String[] indexed by the low byte of the
+ * char, with the same contents (a string for each char of the Tibetan block),
+ * and toWylie() on a text of the same number of chars. The results are in
+ * nanoseconds per char.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LookupBenchmark {
+
+    private static final int CHARS = 1 << 18;
+
+    private static final String[] LINES = { "bsgrubs pa'i bkra shis bde legs/ ",
+            "rgyal ba'i gsung rab ston pa'i dam chos rin po che'i gter/ ",
+            "de bzhin gshegs pa thams cad kyi ye shes kyi sku/ ", "oM ma Ni pad+me hU~M/ ",
+            "sangs rgyas dang byang chub sems dpa' thams cad la phyag 'tshal lo// " };
+
+    private final HashMap<Character, String> map = new HashMap<Character, String>();
+    private final String[] array = new String[0x100];
+    private final char[] chars = new char[CHARS];
+    private final EwtsConverter converter = new EwtsConverter();
+    private String unicode;
+
+    @Setup
+    public void setup() {
+        for (char c = 'ༀ'; c <= '࿿'; c++) {
+            final String ewts = Integer.toHexString(c);
+            map.put(c, ewts);
+            array[c & 0xff] = ewts;
+        }
+        final Random random = new Random(42);
+        for (int i = 0; i < CHARS; i++)
+            chars[i] = (char) (0x0f00 + random.nextInt(0x100));
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < CHARS; i++)
+            sb.append(converter.toUnicode(LINES[i % LINES.length]));
+        unicode = sb.substring(0, CHARS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public int hashMap() {
+        int res = 0;
+        for (final char c : chars)
+            res += map.get(c).length();
+        return res;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public int array() {
+        int res = 0;
+        for (final char c : chars)
+            res += array[c & 0xff].length();
+        return res;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public String toWylie() {
+        return converter.toWylie(unicode);
+    }
+}
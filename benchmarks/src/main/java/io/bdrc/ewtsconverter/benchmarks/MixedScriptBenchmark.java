@@ -0,0 +1,92 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+
+/**
+ * Pages of mixed English and Tibetan, like bilingual catalogs or notes around
+ * Tibetan quotes: mostly English with a few Tibetan words, or mostly Tibetan
+ * with a few English words. toWylie() gets the Unicode, with and without
+ * escaping the English in [comments], toUnicode() gets the EWTS with the
+ * English in [comments].
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MixedScriptBenchmark {
+
+    private static final String[] ENGLISH = { "the", "collected", "works", "of", "a", "master", "printed", "from",
+            "blocks", "carved", "in", "monastery", "with", "notes", "on", "and", "edition", "volume", "folios",
+            "missing", "title", "page", "colophon", "says", "that", "was", "reprinted", "by", "publisher", "Delhi",
+            "Kathmandu", "1985", "(see", "also)", "translated", "as", "\"the", "lamp\"", "is", "for", "this", "text;" };
+
+    private static final String[] TIBETAN = { "bka'", "'gyur", "bstan", "rgyud", "sde", "bla", "ma'i", "rnal",
+            "'byor", "dpal", "ldan", "chos", "'byung", "gsung", "'bum", "mdo", "sngags", "lam", "rim", "bkra",
+            "shis", "rin", "chen", "gter", "mdzod" };
+
+    @Param({ "english", "tibetan" })
+    public String mostly;
+
+    private final EwtsConverter converter = new EwtsConverter();
+    private String ewts, unicode;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        final boolean english = mostly.equals("english");
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length() < 8000) {
+            // runs of one language, the other one only now and then
+            final boolean inEnglish = random.nextInt(10) < (english ? 9 : 1);
+            final int words = inEnglish == english ? 10 + random.nextInt(20) : 1 + random.nextInt(4);
+            if (inEnglish)
+                sb.append('[');
+            for (int i = 0; i < words; i++) {
+                if (i > 0)
+                    sb.append(' ');
+                sb.append(inEnglish ? ENGLISH[random.nextInt(ENGLISH.length)]
+                        : TIBETAN[random.nextInt(TIBETAN.length)]);
+            }
+            if (inEnglish)
+                sb.append(']');
+            sb.append(random.nextInt(8) == 0 ? "\n" : " ");
+        }
+        ewts = sb.toString();
+        unicode = converter.toUnicode(ewts);
+    }
+
+    @Benchmark
+    public String toWylie(final Chars chars) {
+        chars.chars += unicode.length();
+        return converter.toWylie(unicode, null, true);
+    }
+
+    @Benchmark
+    public String toWylieNoEscape(final Chars chars) {
+        chars.chars += unicode.length();
+        return converter.toWylie(unicode, null, false);
+    }
+
+    @Benchmark
+    public String toUnicode(final Chars chars) {
+        chars.chars += ewts.length();
+        return converter.toUnicode(ewts, null, false, false);
+    }
+}
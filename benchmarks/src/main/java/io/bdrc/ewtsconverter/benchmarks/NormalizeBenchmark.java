@@ -0,0 +1,54 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+
+/**
+ * The static EWTS normalizations of EwtsConverter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NormalizeBenchmark {
+
+    @Param({ Corpus.TITLE, Corpus.PAGE, Corpus.TEXT })
+    public String size;
+
+    private String[] inputs;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        inputs = Corpus.inputs(size, Corpus.EWTS);
+    }
+
+    @Benchmark
+    public String normalizeSloppyWylie(final Chars chars) {
+        final String in = inputs[next++ % inputs.length];
+        chars.chars += in.length();
+        return EwtsConverter.normalizeSloppyWylie(in);
+    }
+
+    @Benchmark
+    public String normalizeForLenientSearch(final Chars chars) {
+        final String in = inputs[next++ % inputs.length];
+        chars.chars += in.length();
+        return EwtsConverter.normalizeForLenientSearch(in);
+    }
+}
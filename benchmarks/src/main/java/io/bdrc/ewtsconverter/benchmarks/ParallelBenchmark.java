@@ -0,0 +1,64 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+
+/**
+ * How the throughput of toUnicodeParallel() and toWylieParallel() on a large
+ * text scales with the number of threads of the pool. Compare with the
+ * sequential conversions of ToUnicodeBenchmark and ToWylieBenchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelBenchmark {
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private final EwtsConverter converter = new EwtsConverter();
+    private ForkJoinPool pool;
+    private String ewts, unicode;
+
+    @Setup
+    public void setup() {
+        pool = new ForkJoinPool(threads);
+        ewts = Corpus.inputs(Corpus.TEXT, Corpus.EWTS)[0];
+        unicode = Corpus.inputs(Corpus.TEXT, Corpus.UNICODE)[0];
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public String toUnicodeParallel(final Chars chars) {
+        chars.chars += ewts.length();
+        return converter.toUnicodeParallel(ewts, null, true, false, pool);
+    }
+
+    @Benchmark
+    public String toWylieParallel(final Chars chars) {
+        chars.chars += unicode.length();
+        return converter.toWylieParallel(unicode, null, true, pool);
+    }
+}
@@ -0,0 +1,46 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.Collection;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the allocation profiler and prints, for each of
+ * them, the chars converted per second and the bytes allocated per char. Takes
+ * the same arguments as the JMH runner, for instance a regex of the benchmarks
+ * to run:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar io.bdrc.ewtsconverter.benchmarks.Report ToUnicode
+ * </pre>
+ */
+public class Report {
+
+    public static void main(String[] args) throws Exception {
+        final Options options = new OptionsBuilder().parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class).build();
+        final Collection<RunResult> results = new Runner(options).run();
+
+        System.out.println();
+        System.out.printf("%-70s %14s %10s%n", "Benchmark", "chars/s", "B/char");
+        for (final RunResult result : results) {
+            final StringBuilder name = new StringBuilder(result.getParams().getBenchmark()
+                    .replace("io.bdrc.ewtsconverter.benchmarks.", ""));
+            for (final String key : result.getParams().getParamsKeys())
+                name.append(' ').append(key).append('=').append(result.getParams().getParam(key));
+            final double ops = result.getPrimaryResult().getScore();
+            final Result<?> chars = result.getSecondaryResults().get("chars");
+            final Result<?> alloc = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            if (chars == null || chars.getScore() == 0)
+                continue;
+            final double perChar = alloc == null ? Double.NaN : alloc.getScore() * ops / chars.getScore();
+            System.out.printf("%-70s %14.0f %10.1f%n", name, chars.getScore(), perChar);
+        }
+    }
+}
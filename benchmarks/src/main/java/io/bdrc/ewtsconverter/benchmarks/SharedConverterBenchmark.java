@@ -0,0 +1,78 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+
+/**
+ * Converters shared by all the threads against one converter per thread, on
+ * titles in EWTS, DTS and ALA-LC. Run with -t to see how the throughput scales
+ * with the number of threads, for instance:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar SharedConverter -t 4
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SharedConverterBenchmark {
+
+    /** The converters of all the threads. */
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final EwtsConverter[] converters = converters();
+    }
+
+    /** The converters of a single thread. */
+    @State(Scope.Thread)
+    public static class Own {
+        final EwtsConverter[] converters = converters();
+    }
+
+    private static EwtsConverter[] converters() {
+        return new EwtsConverter[] { new EwtsConverter(),
+                new EwtsConverter(true, false, false, true, EwtsConverter.Mode.DTS),
+                new EwtsConverter(true, false, false, true, EwtsConverter.Mode.ALALC) };
+    }
+
+    private String[][] inputs;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        inputs = new String[][] { Corpus.inputs(Corpus.TITLE, Corpus.EWTS), Corpus.inputs(Corpus.TITLE, Corpus.DTS),
+                Corpus.inputs(Corpus.TITLE, Corpus.ALALC) };
+    }
+
+    private String convert(final EwtsConverter[] converters, final Chars chars) {
+        final int mode = next % converters.length;
+        final String in = inputs[mode][next++ / converters.length % inputs[mode].length];
+        chars.chars += in.length();
+        return converters[mode].toUnicode(in, null, true, false);
+    }
+
+    @Benchmark
+    public String shared(final Shared shared, final Chars chars) {
+        return convert(shared.converters, chars);
+    }
+
+    @Benchmark
+    public String perThread(final Own own, final Chars chars) {
+        return convert(own.converters, chars);
+    }
+}
@@ -0,0 +1,61 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+
+/**
+ * The stream conversions, EwtsConverter.toUnicode(Reader, Appendable, ...) and
+ * toWylie(Reader, Appendable, ...).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamBenchmark {
+
+    @Param({ Corpus.PAGE, Corpus.TEXT })
+    public String size;
+
+    private final EwtsConverter converter = new EwtsConverter();
+    private String ewts, unicode;
+
+    @Setup
+    public void setup() {
+        ewts = Corpus.inputs(size, Corpus.EWTS)[0];
+        unicode = Corpus.inputs(size, Corpus.UNICODE)[0];
+    }
+
+    @Benchmark
+    public StringWriter toUnicode(final Chars chars) throws IOException {
+        chars.chars += ewts.length();
+        final StringWriter out = new StringWriter();
+        converter.toUnicode(new StringReader(ewts), out, null, true, false);
+        return out;
+    }
+
+    @Benchmark
+    public StringWriter toWylie(final Chars chars) throws IOException {
+        chars.chars += unicode.length();
+        final StringWriter out = new StringWriter();
+        converter.toWylie(new StringReader(unicode), out, null, true);
+        return out;
+    }
+}
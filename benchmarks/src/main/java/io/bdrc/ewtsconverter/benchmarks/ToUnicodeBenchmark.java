@@ -0,0 +1,74 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+import io.bdrc.ewtsconverter.Validation;
+import io.bdrc.ewtsconverter.Warning;
+
+/**
+ * EwtsConverter.toUnicode(String, List, boolean, boolean) in each input mode,
+ * with strict checking, with the sloppy normalization, and with the lenient
+ * one, compared with validate() on the same inputs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ToUnicodeBenchmark {
+
+    @Param({ "EWTS", "DTS", "ALALC" })
+    public String mode;
+
+    @Param({ "strict", "sloppy", "lenient" })
+    public String variant;
+
+    @Param({ Corpus.TITLE, Corpus.PAGE, Corpus.TEXT })
+    public String size;
+
+    private EwtsConverter converter;
+    private boolean sloppy, lenient;
+    private String[] inputs;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        final boolean strict = variant.equals("strict");
+        converter = new EwtsConverter(true, strict, false, true, EwtsConverter.Mode.valueOf(mode));
+        sloppy = !strict;
+        lenient = variant.equals("lenient");
+        inputs = Corpus.inputs(size, mode);
+    }
+
+    @Benchmark
+    public String toUnicode(final Chars chars) {
+        final String in = inputs[next++ % inputs.length];
+        chars.chars += in.length();
+        final List<String> warns = new ArrayList<String>();
+        return converter.toUnicode(in, warns, sloppy, lenient);
+    }
+
+    @Benchmark
+    public Validation validate(final Chars chars) {
+        final String in = inputs[next++ % inputs.length];
+        chars.chars += in.length();
+        final List<Warning> warns = new ArrayList<Warning>();
+        return converter.validate(in, sloppy, lenient, false, warns);
+    }
+}
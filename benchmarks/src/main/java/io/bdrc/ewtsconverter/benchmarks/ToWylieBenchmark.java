@@ -0,0 +1,55 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+
+/**
+ * EwtsConverter.toWylie(String, List, boolean), escaping non-Tibetan text or
+ * not.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ToWylieBenchmark {
+
+    @Param({ "true", "false" })
+    public boolean escape;
+
+    @Param({ Corpus.TITLE, Corpus.PAGE, Corpus.TEXT })
+    public String size;
+
+    private final EwtsConverter converter = new EwtsConverter();
+    private String[] inputs;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        inputs = Corpus.inputs(size, Corpus.UNICODE);
+    }
+
+    @Benchmark
+    public String toWylie(final Chars chars) {
+        final String in = inputs[next++ % inputs.length];
+        chars.chars += in.length();
+        final List<String> warns = new ArrayList<String>();
+        return converter.toWylie(in, warns, escape);
+    }
+}
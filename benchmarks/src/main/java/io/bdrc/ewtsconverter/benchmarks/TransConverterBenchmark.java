@@ -0,0 +1,81 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+import io.bdrc.ewtsconverter.TransConverter;
+
+/**
+ * The three conversions of TransConverter, and the conversion from Unicode to
+ * ALA-LC, directly and through EWTS.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TransConverterBenchmark {
+
+    @Param({ Corpus.TITLE, Corpus.PAGE, Corpus.TEXT })
+    public String size;
+
+    private final EwtsConverter converter = new EwtsConverter();
+    private String[] dts, alalc, ewts, unicode;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        dts = Corpus.inputs(size, Corpus.DTS);
+        alalc = Corpus.inputs(size, Corpus.ALALC);
+        ewts = Corpus.inputs(size, Corpus.EWTS);
+        unicode = Corpus.inputs(size, Corpus.UNICODE);
+    }
+
+    @Benchmark
+    public String dtsToEwts(final Chars chars) {
+        final String in = dts[next++ % dts.length];
+        chars.chars += in.length();
+        return TransConverter.dtsToEwts(in);
+    }
+
+    @Benchmark
+    public String alalcToEwts(final Chars chars) {
+        final String in = alalc[next++ % alalc.length];
+        chars.chars += in.length();
+        return TransConverter.alalcToEwts(in);
+    }
+
+    @Benchmark
+    public String ewtsToAlalc(final Chars chars) {
+        final String in = ewts[next++ % ewts.length];
+        chars.chars += in.length();
+        return TransConverter.ewtsToAlalc(in, true);
+    }
+
+    @Benchmark
+    public String unicodeToAlalc(final Chars chars) {
+        final String in = unicode[next++ % unicode.length];
+        chars.chars += in.length();
+        return converter.toAlalc(in, false, null);
+    }
+
+    @Benchmark
+    public String unicodeToAlalcThroughEwts(final Chars chars) {
+        final String in = unicode[next++ % unicode.length];
+        chars.chars += in.length();
+        return TransConverter.ewtsToAlalc(converter.toWylie(in, null, false), true);
+    }
+}
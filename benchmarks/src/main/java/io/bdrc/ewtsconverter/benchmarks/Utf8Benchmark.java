@@ -0,0 +1,88 @@
+package io.bdrc.ewtsconverter.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bdrc.ewtsconverter.EwtsConverter;
+import io.bdrc.ewtsconverter.TsekbarCache;
+
+/**
+ * The UTF-8 byte[] overloads of toUnicode() and toWylie(), compared with
+ * decoding the bytes to a String, converting it and encoding the result, on
+ * the same inputs and the same converter (with a TsekbarCache). The chars
+ * counted are the bytes of the input.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class Utf8Benchmark {
+
+    @Param({ Corpus.TITLE, Corpus.PAGE })
+    public String size;
+
+    private final EwtsConverter converter = new EwtsConverter(true, true, false, true, EwtsConverter.Mode.EWTS,
+            new TsekbarCache(4096));
+    private byte[][] ewts, unicode;
+    private byte[] out;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        final String[] e = Corpus.inputs(size, Corpus.EWTS);
+        final String[] u = Corpus.inputs(size, Corpus.UNICODE);
+        ewts = new byte[e.length][];
+        unicode = new byte[u.length][];
+        int max = 0;
+        for (int i = 0; i < e.length; i++) {
+            ewts[i] = e[i].getBytes(StandardCharsets.UTF_8);
+            unicode[i] = u[i].getBytes(StandardCharsets.UTF_8);
+            max = Math.max(max, Math.max(ewts[i].length, unicode[i].length));
+        }
+        // the Unicode of EWTS takes more bytes than the EWTS
+        out = new byte[max * 4];
+    }
+
+    @Benchmark
+    public byte[] toUnicodeString(final Chars chars) {
+        final byte[] in = ewts[next++ % ewts.length];
+        chars.chars += in.length;
+        return converter.toUnicode(new String(in, StandardCharsets.UTF_8), false, false, null)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int toUnicodeBytes(final Chars chars) {
+        final byte[] in = ewts[next++ % ewts.length];
+        chars.chars += in.length;
+        return converter.toUnicode(in, 0, in.length, out, 0, false, false, null);
+    }
+
+    @Benchmark
+    public byte[] toWylieString(final Chars chars) {
+        final byte[] in = unicode[next++ % unicode.length];
+        chars.chars += in.length;
+        return converter.toWylie(new String(in, StandardCharsets.UTF_8), true, null).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int toWylieBytes(final Chars chars) {
+        final byte[] in = unicode[next++ % unicode.length];
+        chars.chars += in.length;
+        return converter.toWylie(in, 0, in.length, out, 0, true, null);
+    }
+}
@@ -0,0 +1,682 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Generates the classes EwtsTables, SyllableTables, TibTables and
+ * NormalizationTables of the package io.bdrc.ewtsconverter from tables.txt. Runs in the generate-sources phase of
+ * the build, as a single-file source program:
+ *
+ * <pre>
+ * java GenerateTables.java tables.txt outputDirectory
+ * </pre>
+ *
+ * The generated classes have no maps or sets: the EWTS to Unicode side is a
+ * token automaton and arrays indexed by token kind, the Unicode to EWTS side
+ * arrays indexed by the low byte of a code point in the Tibetan block, and the
+ * relations between letters (prefixes, suffixes, superscripts, subscripts,
+ * stacks) are string switches. The replacements of the normalizations are
+ * unmodifiable lists.
+ *
+ * @author Buddhist Digital Resource Center (BDRC)
+ */
+public class GenerateTables {
+
+    private static final String PACKAGE = "io.bdrc.ewtsconverter";
+    private static final String HEADER = "// Generated by src/build/GenerateTables.java from src/build/tables.txt, do not edit.";
+    private static final int TIB_BASE = 0x0f00;
+
+    // a line of a section of correspondences
+    private static final class Entry {
+        final String ewts;
+        final List<String> aliases = new ArrayList<String>();
+        final char direction;
+        final String uni;
+        final String extra;
+        final int line;
+
+        Entry(String ewts, char direction, String uni, String extra, int line) {
+            this.ewts = ewts;
+            this.direction = direction;
+            this.uni = uni;
+            this.extra = extra;
+            this.line = line;
+        }
+
+        boolean toUnicode() {
+            return direction != '<';
+        }
+
+        boolean toWylie() {
+            return direction != '>';
+        }
+    }
+
+    private static final String[] MAPPINGS = { "consonant", "subjoined", "vowel", "final", "other" };
+    private static final String[] LISTS = { "special", "tokens", "suffixes", "affixedsuff2", "stacks" };
+    private static final String[] RELATIONS = { "superscripts", "subscripts", "prefixes", "suff2" };
+    private static final String[] REPLACEMENTS = { "sloppy", "lenient" };
+
+    private final Map<String, List<Entry>> mappings = new LinkedHashMap<String, List<Entry>>();
+    private final Map<String, List<String>> lists = new LinkedHashMap<String, List<String>>();
+    private final Map<String, Map<String, List<String>>> relations = new LinkedHashMap<String, Map<String, List<String>>>();
+    private final List<String[]> ambiguous = new ArrayList<String[]>();
+    private final Map<String, List<String[]>> replacements = new LinkedHashMap<String, List<String[]>>();
+    private final List<String> errors = new ArrayList<String>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: java GenerateTables.java tables.txt outputDirectory");
+            System.exit(2);
+        }
+        final GenerateTables gen = new GenerateTables();
+        gen.read(Paths.get(args[0]));
+        gen.check();
+        if (!gen.errors.isEmpty()) {
+            for (final String error : gen.errors)
+                System.err.println(args[0] + ":" + error);
+            System.exit(1);
+        }
+        final Path dir = Paths.get(args[1]).resolve(PACKAGE.replace('.', '/'));
+        Files.createDirectories(dir);
+        gen.writeEwtsTables(dir.resolve("EwtsTables.java"));
+        gen.writeSyllableTables(dir.resolve("SyllableTables.java"));
+        gen.writeTibTables(dir.resolve("TibTables.java"));
+        gen.writeNormalizationTables(dir.resolve("NormalizationTables.java"));
+    }
+
+    private void read(Path file) throws IOException {
+        for (final String s : MAPPINGS)
+            mappings.put(s, new ArrayList<Entry>());
+        for (final String s : LISTS)
+            lists.put(s, new ArrayList<String>());
+        for (final String s : RELATIONS)
+            relations.put(s, new LinkedHashMap<String, List<String>>());
+        for (final String s : REPLACEMENTS)
+            replacements.put(s, new ArrayList<String[]>());
+        String section = null;
+        int n = 0;
+        for (final String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            n++;
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            if (line.matches("\\[[a-z0-9]+\\]")) {
+                section = line.substring(1, line.length() - 1);
+                continue;
+            }
+            final String[] fields = line.trim().split("\\s+");
+            if (mappings.containsKey(section)) {
+                readMapping(section, fields, n);
+            } else if (lists.containsKey(section)) {
+                for (final String f : fields)
+                    lists.get(section).add(unescape(f));
+            } else if (relations.containsKey(section)) {
+                if (!fields[0].endsWith(":") || fields.length < 2) {
+                    errors.add(n + ": expected \"key: values\"");
+                    continue;
+                }
+                final String key = fields[0].substring(0, fields[0].length() - 1);
+                final List<String> values = new ArrayList<String>();
+                for (int i = 1; i < fields.length; i++)
+                    values.add(fields[i]);
+                if (relations.get(section).put(key, values) != null)
+                    errors.add(n + ": duplicate key " + key);
+            } else if (replacements.containsKey(section)) {
+                if (fields.length > 2) {
+                    errors.add(n + ": expected \"string [replacement]\"");
+                    continue;
+                }
+                final String from = unescape(fields[0]);
+                for (final String[] r : replacements.get(section))
+                    if (r[0].equals(from))
+                        errors.add(n + ": \"" + fields[0] + "\" is already replaced in [" + section + "]");
+                replacements.get(section).add(new String[] { from, fields.length > 1 ? unescape(fields[1]) : "" });
+            } else if ("ambiguous".equals(section)) {
+                if (fields.length != 3 || !fields[1].matches("[0-9]")) {
+                    errors.add(n + ": expected \"syllable root spelling\"");
+                    continue;
+                }
+                ambiguous.add(fields);
+            } else {
+                errors.add(n + ": line outside of a known section");
+            }
+        }
+    }
+
+    private void readMapping(String section, String[] fields, int n) {
+        final boolean isFinal = section.equals("final");
+        if (fields.length < 3 || fields[1].length() != 1 || "=<>".indexOf(fields[1].charAt(0)) < 0
+                || (isFinal && fields.length != 4)) {
+            errors.add(n + ": expected \"ewts[,alias...] =|<|> code points\"" + (isFinal ? " and a class" : ""));
+            return;
+        }
+        final StringBuilder uni = new StringBuilder();
+        for (int i = 2; i < (isFinal ? 3 : fields.length); i++)
+            uni.appendCodePoint(Integer.parseInt(fields[i], 16));
+        final String[] names = fields[0].split(",");
+        final Entry e = new Entry(unescape(names[0]), fields[1].charAt(0), uni.toString(), isFinal ? fields[3] : null,
+                n);
+        for (int i = 1; i < names.length; i++)
+            e.aliases.add(unescape(names[i]));
+        if (!e.aliases.isEmpty() && !e.toUnicode())
+            errors.add(n + ": aliases are only converted to Unicode");
+        mappings.get(section).add(e);
+    }
+
+    private static String unescape(String s) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length() && s.charAt(i + 1) == '\\') {
+                sb.append(c);
+                i++;
+            } else if (c == '\\' && i + 1 < s.length() && s.charAt(i + 1) == 'u' && i + 6 <= s.length()) {
+                sb.append((char) Integer.parseInt(s.substring(i + 2, i + 6), 16));
+                i += 5;
+            } else if (c == '\\' && i + 1 < s.length() && (s.charAt(i + 1) == 'r' || s.charAt(i + 1) == 'n')) {
+                sb.append(s.charAt(i + 1) == 'r' ? '\r' : '\n');
+                i++;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // EWTS to Unicode: the EWTS (and aliases) of the section converted to Unicode
+    private Map<String, String> toUnicode(String section) {
+        final Map<String, String> res = new LinkedHashMap<String, String>();
+        for (final Entry e : mappings.get(section)) {
+            if (!e.toUnicode())
+                continue;
+            final List<String> names = new ArrayList<String>();
+            names.add(e.ewts);
+            names.addAll(e.aliases);
+            for (final String name : names)
+                if (res.put(name, e.uni) != null)
+                    errors.add(e.line + ": \"" + name + "\" is already converted to Unicode in [" + section + "]");
+        }
+        return res;
+    }
+
+    // Unicode to EWTS: the code points of the section converted to EWTS
+    private Map<Character, Entry> toWylie(String section) {
+        final Map<Character, Entry> res = new LinkedHashMap<Character, Entry>();
+        for (final Entry e : mappings.get(section)) {
+            if (!e.toWylie())
+                continue;
+            if (e.uni.length() != 1)
+                errors.add(e.line + ": only single code points are converted to EWTS");
+            else if (res.put(e.uni.charAt(0), e) != null)
+                errors.add(e.line + ": " + hex(e.uni.charAt(0)) + " is already converted to EWTS in [" + section + "]");
+        }
+        return res;
+    }
+
+    // the checks that keep the two directions and the relations consistent
+    private void check() {
+        final Map<String, String> consonants = toUnicode("consonant");
+        final Map<String, String> subjoined = toUnicode("subjoined");
+        final Map<String, String> vowels = toUnicode("vowel");
+        for (final String section : MAPPINGS) {
+            final Map<String, String> forward = toUnicode(section);
+            for (final Entry e : toWylie(section).values()) {
+                // the EWTS of a stack is converted letter by letter, like toUnicode() does
+                String back = forward.get(e.ewts);
+                if (back == null) {
+                    StringBuilder sb = new StringBuilder();
+                    final String[] letters = e.ewts.split("\\+");
+                    for (int i = 0; i < letters.length && sb != null; i++) {
+                        String u;
+                        if (i > 0 || section.equals("subjoined"))
+                            u = subjoined.get(letters[i]);
+                        else if ((u = consonants.get(letters[i])) == null)
+                            u = vowels.get(letters[i]);
+                        if (u == null)
+                            sb = null;
+                        else
+                            sb.append(u);
+                    }
+                    back = sb == null ? null : sb.toString();
+                }
+                if (back == null || !Normalizer.normalize(back, Normalizer.Form.NFD)
+                        .equals(Normalizer.normalize(e.uni, Normalizer.Form.NFD)))
+                    errors.add(e.line + ": \"" + e.ewts + "\" is not converted back to " + hex(e.uni.charAt(0)));
+            }
+        }
+        for (final String s : lists.get("tokens"))
+            if (s.length() < 2)
+                errors.add("[tokens]: \"" + s + "\" is a single char, all of them are tokens");
+        for (final String s : tokens())
+            for (int i = 0; i < s.length(); i++)
+                if (s.charAt(i) >= 0x80)
+                    errors.add("the token \"" + s + "\" is not ASCII");
+        for (final Map.Entry<String, Map<String, List<String>>> rel : relations.entrySet()) {
+            for (final Map.Entry<String, List<String>> e : rel.getValue().entrySet()) {
+                checkStack(rel.getKey(), e.getKey(), consonants);
+                for (final String s : e.getValue())
+                    checkStack(rel.getKey(), s, consonants);
+            }
+        }
+        for (final String section : new String[] { "suffixes", "affixedsuff2", "stacks" })
+            for (final String s : lists.get(section))
+                checkStack(section, s, consonants);
+        for (final String[] a : ambiguous)
+            if (Integer.parseInt(a[1]) > 1)
+                errors.add("[ambiguous]: the root of " + a[0] + " must be its first or second letter");
+    }
+
+    private void checkStack(String section, String stack, Map<String, String> consonants) {
+        for (final String letter : stack.split("\\+"))
+            if (!consonants.containsKey(letter))
+                errors.add("[" + section + "]: \"" + letter + "\" of \"" + stack + "\" is not a consonant");
+    }
+
+    // the tokens of the automaton that are longer than one char
+    private TreeSet<String> tokens() {
+        final TreeSet<String> res = new TreeSet<String>(lists.get("tokens"));
+        for (final String section : MAPPINGS)
+            for (final String s : toUnicode(section).keySet())
+                if (s.length() > 1)
+                    res.add(s);
+        return res;
+    }
+
+    private void writeEwtsTables(Path file) throws IOException {
+        // the automaton, built like a trie: the state of a single ASCII char c is c + 1
+        final TreeSet<String> tokens = tokens();
+        final Map<Integer, Integer> next = new LinkedHashMap<Integer, Integer>();
+        final List<String> accept = new ArrayList<String>();
+        accept.add(null);
+        for (char c = 0; c < 0x80; c++) {
+            next.put((int) c, c + 1);
+            accept.add(String.valueOf(c));
+        }
+        for (final String tok : tokens) {
+            int state = 0;
+            for (int j = 0; j < tok.length(); j++) {
+                final int k = (state << 7) | tok.charAt(j);
+                if (!next.containsKey(k)) {
+                    next.put(k, accept.size());
+                    accept.add(null);
+                }
+                state = next.get(k);
+            }
+            accept.set(state, tok);
+        }
+        final int states = accept.size();
+        final int crlf = next.get((('\r' + 1) << 7) | '\n');
+        final int kinds = states + 3;
+        // m_tok_char, m_tok_escape and m_tok_uescape have no token text
+        for (int k = states; k < kinds; k++)
+            accept.add(null);
+
+        final String[] names = { "consonant", "subjoined", "vowel", "final_uni", "final_class", "other" };
+        final List<Map<String, String>> maps = new ArrayList<Map<String, String>>();
+        maps.add(toUnicode("consonant"));
+        maps.add(toUnicode("subjoined"));
+        maps.add(toUnicode("vowel"));
+        maps.add(toUnicode("final"));
+        final Map<String, String> finalClass = new LinkedHashMap<String, String>();
+        for (final Entry e : mappings.get("final")) {
+            finalClass.put(e.ewts, e.extra);
+            for (final String alias : e.aliases)
+                finalClass.put(alias, e.extra);
+        }
+        maps.add(finalClass);
+        maps.add(toUnicode("other"));
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println(HEADER);
+            out.println("package " + PACKAGE + ";");
+            out.println();
+            out.println("/**");
+            out.println(" * The tables of the conversion from EWTS to Unicode: the tokenizer automaton and");
+            out.println(" * the conversion of each kind of token.");
+            out.println(" */");
+            out.println("final class EwtsTables {");
+            out.println();
+            out.println("    private EwtsTables() {");
+            out.println("    }");
+            out.println();
+            out.println("    // token kinds: a token of the automaton is identified by the state it ends");
+            out.println("    // in (a single ASCII char c by c + 1), a single non-ASCII char by m_tok_char,");
+            out.println("    // an escape (\\\\x) by m_tok_escape and a Unicode escape (\\\\uxxxx or");
+            out.println("    // \\\\Uxxxxxxxx) by m_tok_uescape");
+            out.println("    static final int m_tok_crlf = " + crlf + ", m_tok_char = " + states + ", m_tok_escape = "
+                    + (states + 1) + ", m_tok_uescape = " + (states + 2) + ";");
+            out.println();
+            out.println("    // the automaton: m_token_next[state * 128 + c] is the state reached from");
+            out.println("    // \"state\" on the ASCII char c (0 if there is none, 0 being the root) and");
+            out.println("    // m_token_accept[state] is the token ending in that state, if any");
+            out.println("    static final int[] m_token_next = new int[" + states + " * 0x80];");
+            out.print("    static final String[] m_token_accept = {");
+            printStrings(out, accept);
+            out.println(" };");
+            out.println("    // the transitions of the automaton from other states than the root");
+            final List<String> transitions = new ArrayList<String>();
+            for (final Map.Entry<Integer, Integer> t : next.entrySet())
+                if (t.getKey() >= 0x80)
+                    transitions.add(t.getKey() + ", " + t.getValue());
+            out.print("    private static final int[] TRANSITIONS = {");
+            printWrapped(out, transitions, ",", 8);
+            out.println(" };");
+            out.println();
+            out.println("    // the conversions of the tokens, indexed by token kind");
+            for (final String name : names)
+                out.println("    static final String[] m_" + name + "_tok = new String[" + kinds + "];");
+            for (final String name : new String[] { "special", "superscript", "subscript", "tsekbar" })
+                out.println("    static final boolean[] m_" + name + "_tok = new boolean[" + kinds + "];");
+            out.println();
+            out.println("    static {");
+            out.println("        for (int c = 0; c < 0x80; c++)");
+            out.println("            m_token_next[c] = c + 1;");
+            out.println("        for (int i = 0; i < TRANSITIONS.length; i += 2)");
+            out.println("            m_token_next[TRANSITIONS[i]] = TRANSITIONS[i + 1];");
+            for (int k = 0; k < states; k++) {
+                final String tok = accept.get(k);
+                if (tok == null)
+                    continue;
+                for (int m = 0; m < names.length; m++) {
+                    final String v = maps.get(m).get(tok);
+                    if (v != null)
+                        out.println("        m_" + names[m] + "_tok[" + k + "] = " + literal(v) + "; // " + comment(tok));
+                }
+                if (lists.get("special").contains(tok))
+                    out.println("        m_special_tok[" + k + "] = true; // " + comment(tok));
+                if (relations.get("superscripts").containsKey(tok))
+                    out.println("        m_superscript_tok[" + k + "] = true; // " + comment(tok));
+                if (relations.get("subscripts").containsKey(tok))
+                    out.println("        m_subscript_tok[" + k + "] = true; // " + comment(tok));
+                // the kinds of tokens toUnicodeOneTsekbar() looks at
+                if (maps.get(0).containsKey(tok) || maps.get(2).containsKey(tok) || maps.get(4).containsKey(tok)
+                        || tok.equals("+") || tok.equals("^") || tok.equals("."))
+                    out.println("        m_tsekbar_tok[" + k + "] = true; // " + comment(tok));
+            }
+            out.println("    }");
+            out.println();
+            printRelation(out, "superscript", "sup", "below", relations.get("superscripts"));
+            out.println();
+            printRelation(out, "subscript", "sub", "above", relations.get("subscripts"));
+            out.println("}");
+        }
+    }
+
+    private void writeSyllableTables(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println(HEADER);
+            out.println("package " + PACKAGE + ";");
+            out.println();
+            out.println("/**");
+            out.println(" * The structure of syllables, used by the checks of the conversion to Unicode and");
+            out.println(" * to find the root letter in the conversion to EWTS.");
+            out.println(" */");
+            out.println("final class SyllableTables {");
+            out.println();
+            out.println("    private SyllableTables() {");
+            out.println("    }");
+            out.println();
+            printSet(out, "isPrefix", "s", new ArrayList<String>(relations.get("prefixes").keySet()));
+            out.println();
+            printRelation(out, "prefix", "pref", "after", relations.get("prefixes"));
+            out.println();
+            printSet(out, "isSuffix", "s", lists.get("suffixes"));
+            out.println();
+            printSet(out, "isSuff2", "s", new ArrayList<String>(relations.get("suff2").keySet()));
+            out.println();
+            printRelation(out, "suff2", "suff", "before", relations.get("suff2"));
+            out.println();
+            out.println("    // the letters that can follow an a-chung suffix, as in pa'm or pa'ng");
+            printSet(out, "isAffixedSuff2", "s", lists.get("affixedsuff2"));
+            out.println();
+            out.println("    // root letter index for very ambiguous three-stack syllables, or null");
+            out.println("    static Integer ambiguous_key(final String syll) {");
+            out.println("        if (syll == null)\n            return null;");
+            out.println("        switch (syll) {");
+            for (final String[] a : ambiguous)
+                out.println("        case " + literal(a[0]) + ":\n            return " + a[1] + ";");
+            out.println("        default:\n            return null;\n        }\n    }");
+            out.println();
+            out.println("    // the syllable spelled with its vowel, or null");
+            out.println("    static String ambiguous_wylie(final String syll) {");
+            out.println("        if (syll == null)\n            return null;");
+            out.println("        switch (syll) {");
+            for (final String[] a : ambiguous)
+                out.println("        case " + literal(a[0]) + ":\n            return " + literal(a[2]) + ";");
+            out.println("        default:\n            return null;\n        }\n    }");
+            out.println("}");
+        }
+    }
+
+    private void writeTibTables(Path file) throws IOException {
+        final Map<String, String> consonants = toUnicode("consonant");
+        final Map<String, String> vowels = toUnicode("vowel");
+        final Map<Character, Entry> tops = toWylie("consonant");
+        final Map<Character, Entry> vowelSigns = toWylie("vowel");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println(HEADER);
+            out.println("package " + PACKAGE + ";");
+            out.println();
+            out.println("/**");
+            out.println(" * The tables of the conversion from Unicode to EWTS, indexed by the low byte of");
+            out.println(" * a code point in the Tibetan block (U+0F00-U+0FFF).");
+            out.println(" */");
+            out.println("final class TibTables {");
+            out.println();
+            out.println("    private TibTables() {");
+            out.println("    }");
+            out.println();
+            final String[] names = { "top", "subjoined", "vowel", "final_wylie", "final_class", "other" };
+            for (final String name : names)
+                out.println("    static final String[] m_tib_" + name + " = new String[0x100];");
+            out.println("    // the few entries of m_tib_other that are not in the Tibetan block");
+            out.println("    static final String[] m_tib_other_ascii = new String[0x80];");
+            out.println();
+            out.println("    static {");
+            final String[] sections = { "consonant", "subjoined", "vowel", "final", "final", "other" };
+            for (int m = 0; m < names.length; m++) {
+                for (final Map.Entry<Character, Entry> e : toWylie(sections[m]).entrySet()) {
+                    final char c = e.getKey();
+                    final String v = names[m].equals("final_class") ? e.getValue().extra : e.getValue().ewts;
+                    if ((c & 0xff00) == TIB_BASE)
+                        out.println("        m_tib_" + names[m] + String.format("[0x%02x] = ", c & 0xff) + literal(v)
+                                + "; // " + hex(c));
+                    else if (c < 0x80 && names[m].equals("other"))
+                        out.println("        m_tib_other_ascii" + String.format("[0x%02x] = ", (int) c) + literal(v) + "; // " + hex(c));
+                    else
+                        errors.add(e.getValue().line + ": " + hex(c) + " is not in the Tibetan block");
+                }
+            }
+            out.println("    }");
+            out.println();
+
+            // the long vowels are the vowels with a-chung, the caret letters the
+            // consonants with 0F39
+            final Map<String, String> longVowels = new LinkedHashMap<String, String>();
+            for (final Map.Entry<Character, Entry> e : vowelSigns.entrySet())
+                for (final Map.Entry<String, String> v : vowels.entrySet())
+                    if (v.getValue().equals("\u0f71" + e.getKey()) && !longVowels.containsKey(e.getValue().ewts))
+                        longVowels.put(e.getValue().ewts, v.getKey());
+            final Map<String, String> carets = new LinkedHashMap<String, String>();
+            for (final Map.Entry<String, String> c : consonants.entrySet())
+                if (c.getValue().length() == 2 && c.getValue().charAt(1) == '\u0f39'
+                        && tops.containsKey(c.getValue().charAt(0)))
+                    carets.put(tops.get(c.getValue().charAt(0)).ewts, c.getKey());
+            out.println("    // the long form of a vowel, or null");
+            printMap(out, "tib_vowel_long", longVowels);
+            out.println();
+            out.println("    // the letter written with a caret, or null");
+            printMap(out, "tib_caret", carets);
+            out.println();
+            out.println("    // the stacks that do not need \"+\"s in them");
+            printSet(out, "tib_stack", "s", lists.get("stacks"));
+            out.println("}");
+        }
+        if (!errors.isEmpty()) {
+            for (final String error : errors)
+                System.err.println(error);
+            System.exit(1);
+        }
+    }
+
+    private void writeNormalizationTables(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println(HEADER);
+            out.println("package " + PACKAGE + ";");
+            out.println();
+            out.println("import java.util.Arrays;");
+            out.println("import java.util.Collections;");
+            out.println("import java.util.List;");
+            out.println();
+            out.println("/**");
+            out.println(" * The replacements of the sloppy and lenient normalizations of EWTS, in order of");
+            out.println(" * priority: the strings and their replacements, at the same index.");
+            out.println(" */");
+            out.println("final class NormalizationTables {");
+            out.println();
+            out.println("    private NormalizationTables() {");
+            out.println("    }");
+            final String[] names = { "sloppy", "lenient" };
+            final String[] comments = { "normalizeSloppyWylie()", "normalizeForLenientSearch()" };
+            for (int m = 0; m < names.length; m++) {
+                final List<String> from = new ArrayList<String>(), to = new ArrayList<String>();
+                for (final String[] r : replacements.get(names[m])) {
+                    from.add(r[0]);
+                    to.add(r[1]);
+                }
+                out.println();
+                out.println("    // " + comments[m]);
+                out.print("    static final List<String> m_" + names[m] + "_from = list(");
+                printStrings(out, from);
+                out.println(");");
+                out.print("    static final List<String> m_" + names[m] + "_to = list(");
+                printStrings(out, to);
+                out.println(");");
+            }
+            out.println();
+            out.println("    private static List<String> list(final String... strings) {");
+            out.println("        return Collections.unmodifiableList(Arrays.asList(strings));");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private static void printSet(PrintWriter out, String method, String arg, List<String> values) {
+        out.println("    static boolean " + method + "(final String " + arg + ") {");
+        out.println("        if (" + arg + " == null)");
+        out.println("            return false;");
+        out.println("        switch (" + arg + ") {");
+        printCases(out, values, "        ");
+        out.println("            return true;");
+        out.println("        default:");
+        out.println("            return false;");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    private static void printRelation(PrintWriter out, String method, String key, String arg,
+            Map<String, List<String>> relation) {
+        out.println("    static boolean " + method + "(final String " + key + ", final String " + arg + ") {");
+        out.println("        if (" + key + " == null || " + arg + " == null)");
+        out.println("            return false;");
+        out.println("        switch (" + key + ") {");
+        for (final Map.Entry<String, List<String>> e : relation.entrySet()) {
+            out.println("        case " + literal(e.getKey()) + ":");
+            out.println("            switch (" + arg + ") {");
+            printCases(out, e.getValue(), "            ");
+            out.println("                return true;");
+            out.println("            default:");
+            out.println("                return false;");
+            out.println("            }");
+        }
+        out.println("        default:");
+        out.println("            return false;");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    private static void printMap(PrintWriter out, String method, Map<String, String> map) {
+        out.println("    static String " + method + "(final String s) {");
+        out.println("        if (s == null)");
+        out.println("            return null;");
+        out.println("        switch (s) {");
+        for (final Map.Entry<String, String> e : map.entrySet()) {
+            out.println("        case " + literal(e.getKey()) + ":");
+            out.println("            return " + literal(e.getValue()) + ";");
+        }
+        out.println("        default:");
+        out.println("            return null;");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    private static void printCases(PrintWriter out, List<String> values, String indent) {
+        StringBuilder line = new StringBuilder(indent);
+        for (final String v : values) {
+            final String c = "case " + literal(v) + ":";
+            if (line.length() > indent.length() && line.length() + 1 + c.length() > 100) {
+                out.println(line);
+                line = new StringBuilder(indent);
+            }
+            if (line.length() > indent.length())
+                line.append(' ');
+            line.append(c);
+        }
+        out.println(line);
+    }
+
+    private static void printStrings(PrintWriter out, List<String> values) {
+        final List<String> literals = new ArrayList<String>();
+        for (final String v : values)
+            literals.add(v == null ? "null" : literal(v));
+        printWrapped(out, literals, ",", 12);
+    }
+
+    private static void printWrapped(PrintWriter out, List<String> items, String sep, int perLine) {
+        for (int i = 0; i < items.size(); i++) {
+            if (i % perLine == 0)
+                out.print("\n           ");
+            out.print(" " + items.get(i) + (i < items.size() - 1 ? sep : ""));
+        }
+    }
+
+    // a Java string literal, with escapes for all the chars that are not printable ASCII
+    private static String literal(String s) {
+        final StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c == '\n')
+                sb.append("\\n");
+            else if (c == '\r')
+                sb.append("\\r");
+            else if (c < 0x20 || c > 0x7e)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    // a token in a comment
+    private static String comment(String tok) {
+        if (tok.equals(" "))
+            return "U+0020";
+        final String lit = literal(tok);
+        return lit.substring(1, lit.length() - 1).replace("\\u", "U+");
+    }
+
+    private static String hex(char c) {
+        return String.format("U+%04X", (int) c);
+    }
+}
@@ -20,13 +20,23 @@
 
 package io.bdrc.ewtsconverter;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharsetDecoder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-
-import org.apache.commons.lang3.StringUtils;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Tibetan EWTS from/to Unicode converter object.
@@ -37,1199 +47,77 @@ import org.apache.commons.lang3.StringUtils;
  */
 public class EwtsConverter {
 
-    // various options for Converter conversion
-    private boolean check, check_strict, print_warnings, fix_spacing;
-
-    // constant hashes and sets to help with the conversion
-    private static HashMap<String, String> m_consonant, m_subjoined, m_vowel, m_final_uni, m_final_class, m_other,
-            m_ambiguous_wylie, m_tib_vowel_long, m_tib_caret;
-    private static HashMap<Character, String> m_tib_top, m_tib_subjoined, m_tib_vowel, m_tib_final_wylie,
-            m_tib_final_class, m_tib_other;
-    private static HashMap<String, Integer> m_ambiguous_key;
-    private static HashMap<Character, Integer> m_tokens_start;
-    private static HashSet<String> m_special, m_suffixes, m_tib_stacks, m_tokens, m_affixedsuff2;
-    private static HashMap<String, HashSet<String>> m_superscripts, m_subscripts, m_prefixes, m_suff2;
-
-    private static final String[] base = new String[45];
-    private static final String[] repl = new String[45];
-    
-    private static final String[] baseL = new String[39];
-    private static final String[] replL = new String[39];
+    // various options for EWTS conversion. A converter never changes after
+    // its construction, so that it can be shared by any number of threads.
+    private final boolean check, check_strict, print_warnings, fix_spacing;
+
+    // optional cache of converted tsekbars, and the bits of the cache keys that
+    // encode the options the conversion to Unicode depends on
+    private final TsekbarCache cache;
+    private final int cache_flags;
+    // the bit of the cache keys of tsekbars converted to EWTS
+    private static final int CACHE_TO_WYLIE = 4;
+
+    // initial size of the buffer of the stream conversions, in chars
+    static final int STREAM_BUFFER_SIZE = 1 << 16;
+    // minimum size of the chunks converted in parallel, in chars
+    private static final int PARALLEL_CHUNK_SIZE = 1 << 14;
+    // number of strings of a batch converted by each task
+    private static final int BATCH_SLICE = 1024;
+
+    // Unicode to Wylie tables are indexed by the low byte of a code point in the
+    // Tibetan block (U+0F00-U+0FFF), so that lookups need neither boxing nor hashing
+    private static final int TIB_BASE = 0x0f00;
+    private static final int TIB_SIZE = 0x100;
+
+    // token kinds: the end of the input is 0, a token of the automaton is identified by
+    // the state it ends in (a single ASCII char c by c + 1), other tokens by one of
+    // m_tok_char (a single non-ASCII char), m_tok_escape (\\x) or m_tok_uescape
+    // (\\uxxxx or \\Uxxxxxxxx).
+    private static final int TOK_END = 0;
+    private static final int TOK_NL = '\n' + 1, TOK_CR = '\r' + 1, TOK_SPACE = ' ' + 1, TOK_APOS = '\'' + 1,
+            TOK_PLUS = '+' + 1, TOK_DOT = '.' + 1, TOK_LBRACKET = '[' + 1, TOK_RBRACKET = ']' + 1,
+            TOK_CARET = '^' + 1, TOK_A = 'a' + 1, TOK_L = 'l' + 1, TOK_W = 'w' + 1, TOK_Y = 'y' + 1;
 
+    /**
+     * The transliteration scheme of the input of toUnicode().
+     */
     public static enum Mode {
-        WYLIE, EWTS, DWTS, DTS, ALALC, ACIP
-    }
-
-    private Mode mode = Mode.EWTS; // EWTS by default
-
-    // initialize all the hashes with the correspondences between Converter and
-    // Unicode.
-    // this gets called from a 'static section' to initialize the hashes the moment
-    // the
-    // class gets loaded.
-    private static final void initHashes() {
-        HashSet<String> tmpSet;
-
-        // mappings auto-generated from the Perl code
-
-        // *** Converter to Unicode mappings ***
-
-        // list of wylie consonant => unicode
-        m_consonant = new HashMap<String, String>();
-        m_consonant.put("k", "\u0f40");
-        m_consonant.put("kh", "\u0f41");
-        m_consonant.put("g", "\u0f42");
-        m_consonant.put("gh", "\u0f42\u0fb7");
-        m_consonant.put("g+h", "\u0f42\u0fb7");
-        m_consonant.put("ng", "\u0f44");
-        m_consonant.put("c", "\u0f45");
-        m_consonant.put("ch", "\u0f46");
-        m_consonant.put("j", "\u0f47");
-        m_consonant.put("ny", "\u0f49");
-        m_consonant.put("T", "\u0f4a");
-        m_consonant.put("-t", "\u0f4a");
-        m_consonant.put("Th", "\u0f4b");
-        m_consonant.put("-th", "\u0f4b");
-        m_consonant.put("D", "\u0f4c");
-        m_consonant.put("-d", "\u0f4c");
-        m_consonant.put("Dh", "\u0f4c\u0fb7");
-        m_consonant.put("D+h", "\u0f4c\u0fb7");
-        m_consonant.put("-dh", "\u0f4c\u0fb7");
-        m_consonant.put("-d+h", "\u0f4c\u0fb7");
-        m_consonant.put("N", "\u0f4e");
-        m_consonant.put("-n", "\u0f4e");
-        m_consonant.put("t", "\u0f4f");
-        m_consonant.put("th", "\u0f50");
-        m_consonant.put("d", "\u0f51");
-        m_consonant.put("dh", "\u0f51\u0fb7");
-        m_consonant.put("d+h", "\u0f51\u0fb7");
-        m_consonant.put("n", "\u0f53");
-        m_consonant.put("p", "\u0f54");
-        m_consonant.put("ph", "\u0f55");
-        m_consonant.put("b", "\u0f56");
-        m_consonant.put("bh", "\u0f56\u0fb7");
-        m_consonant.put("b+h", "\u0f56\u0fb7");
-        m_consonant.put("m", "\u0f58");
-        m_consonant.put("ts", "\u0f59");
-        m_consonant.put("tsh", "\u0f5a");
-        m_consonant.put("dz", "\u0f5b");
-        m_consonant.put("dzh", "\u0f5b\u0fb7");
-        m_consonant.put("dz+h", "\u0f5b\u0fb7");
-        m_consonant.put("w", "\u0f5d");
-        m_consonant.put("zh", "\u0f5e");
-        m_consonant.put("z", "\u0f5f");
-        m_consonant.put("'", "\u0f60");
-        m_consonant.put("y", "\u0f61");
-        m_consonant.put("r", "\u0f62");
-        m_consonant.put("l", "\u0f63");
-        m_consonant.put("sh", "\u0f64");
-        m_consonant.put("Sh", "\u0f65");
-        m_consonant.put("-sh", "\u0f65");
-        m_consonant.put("s", "\u0f66");
-        m_consonant.put("h", "\u0f67");
-        m_consonant.put("W", "\u0f5d");
-        m_consonant.put("Y", "\u0f61");
-        m_consonant.put("R", "\u0f6a");
-        m_consonant.put("f", "\u0f55\u0f39");
-        m_consonant.put("v", "\u0f56\u0f39");
-
-        // subjoined letters
-        m_subjoined = new HashMap<String, String>();
-        m_subjoined.put("k", "\u0f90");
-        m_subjoined.put("kh", "\u0f91");
-        m_subjoined.put("g", "\u0f92");
-        m_subjoined.put("gh", "\u0f92\u0fb7");
-        m_subjoined.put("g+h", "\u0f92\u0fb7");
-        m_subjoined.put("ng", "\u0f94");
-        m_subjoined.put("c", "\u0f95");
-        m_subjoined.put("ch", "\u0f96");
-        m_subjoined.put("j", "\u0f97");
-        m_subjoined.put("ny", "\u0f99");
-        m_subjoined.put("T", "\u0f9a");
-        m_subjoined.put("-t", "\u0f9a");
-        m_subjoined.put("Th", "\u0f9b");
-        m_subjoined.put("-th", "\u0f9b");
-        m_subjoined.put("D", "\u0f9c");
-        m_subjoined.put("-d", "\u0f9c");
-        m_subjoined.put("Dh", "\u0f9c\u0fb7");
-        m_subjoined.put("D+h", "\u0f9c\u0fb7");
-        m_subjoined.put("-dh", "\u0f9c\u0fb7");
-        m_subjoined.put("-d+h", "\u0f9c\u0fb7");
-        m_subjoined.put("N", "\u0f9e");
-        m_subjoined.put("-n", "\u0f9e");
-        m_subjoined.put("t", "\u0f9f");
-        m_subjoined.put("th", "\u0fa0");
-        m_subjoined.put("d", "\u0fa1");
-        m_subjoined.put("dh", "\u0fa1\u0fb7");
-        m_subjoined.put("d+h", "\u0fa1\u0fb7");
-        m_subjoined.put("n", "\u0fa3");
-        m_subjoined.put("p", "\u0fa4");
-        m_subjoined.put("ph", "\u0fa5");
-        m_subjoined.put("b", "\u0fa6");
-        m_subjoined.put("bh", "\u0fa6\u0fb7");
-        m_subjoined.put("b+h", "\u0fa6\u0fb7");
-        m_subjoined.put("m", "\u0fa8");
-        m_subjoined.put("ts", "\u0fa9");
-        m_subjoined.put("tsh", "\u0faa");
-        m_subjoined.put("dz", "\u0fab");
-        m_subjoined.put("dzh", "\u0fab\u0fb7");
-        m_subjoined.put("dz+h", "\u0fab\u0fb7");
-        m_subjoined.put("w", "\u0fad");
-        m_subjoined.put("zh", "\u0fae");
-        m_subjoined.put("z", "\u0faf");
-        m_subjoined.put("'", "\u0fb0");
-        m_subjoined.put("y", "\u0fb1");
-        m_subjoined.put("r", "\u0fb2");
-        m_subjoined.put("l", "\u0fb3");
-        m_subjoined.put("sh", "\u0fb4");
-        m_subjoined.put("Sh", "\u0fb5");
-        m_subjoined.put("-sh", "\u0fb5");
-        m_subjoined.put("s", "\u0fb6");
-        m_subjoined.put("h", "\u0fb7");
-        m_subjoined.put("a", "\u0fb8");
-        m_subjoined.put("W", "\u0fba");
-        m_subjoined.put("Y", "\u0fbb");
-        m_subjoined.put("R", "\u0fbc");
-
-        // vowels
-        m_vowel = new HashMap<String, String>();
-        m_vowel.put("a", "\u0f68");
-        m_vowel.put("A", "\u0f71");
-        m_vowel.put("i", "\u0f72");
-        m_vowel.put("I", "\u0f71\u0f72");
-        m_vowel.put("u", "\u0f74");
-        m_vowel.put("U", "\u0f71\u0f74");
-        m_vowel.put("e", "\u0f7a");
-        m_vowel.put("E", "\u0f71\u0f7a");
-        m_vowel.put("ai", "\u0f7b");
-        m_vowel.put("o", "\u0f7c");
-        m_vowel.put("O", "\u0f71\u0f7c");
-        m_vowel.put("au", "\u0f7d");
-        m_vowel.put("-i", "\u0f80");
-        m_vowel.put("-I", "\u0f71\u0f80");
-
-        // final symbols to unicode
-        m_final_uni = new HashMap<String, String>();
-        m_final_uni.put("M", "\u0f7e");
-        m_final_uni.put("~M`", "\u0f82");
-        m_final_uni.put("~M", "\u0f83");
-        m_final_uni.put("X", "\u0f37");
-        m_final_uni.put("~X", "\u0f35");
-        m_final_uni.put("H", "\u0f7f");
-        m_final_uni.put("?", "\u0f84");
-        m_final_uni.put("^", "\u0f39");
-        m_final_uni.put("&", "\u0f85");
-
-        // final symbols organized by class
-        m_final_class = new HashMap<String, String>();
-        m_final_class.put("M", "M");
-        m_final_class.put("~M`", "M");
-        m_final_class.put("~M", "M");
-        m_final_class.put("X", "X");
-        m_final_class.put("~X", "X");
-        m_final_class.put("H", "H");
-        m_final_class.put("?", "?");
-        m_final_class.put("^", "^");
-        m_final_class.put("&", "&");
-
-        // other stand-alone symbols
-        m_other = new HashMap<String, String>();
-        m_other.put("0", "\u0f20");
-        m_other.put("1", "\u0f21");
-        m_other.put("2", "\u0f22");
-        m_other.put("3", "\u0f23");
-        m_other.put("4", "\u0f24");
-        m_other.put("5", "\u0f25");
-        m_other.put("6", "\u0f26");
-        m_other.put("7", "\u0f27");
-        m_other.put("8", "\u0f28");
-        m_other.put("9", "\u0f29");
-        m_other.put(" ", "\u0f0b");
-        m_other.put("*", "\u0f0c");
-        m_other.put("/", "\u0f0d");
-        m_other.put("//", "\u0f0e");
-        m_other.put(";", "\u0f0f");
-        m_other.put("|", "\u0f11");
-        m_other.put("!", "\u0f08");
-        m_other.put(":", "\u0f14");
-        m_other.put("_", " ");
-        m_other.put("=", "\u0f34");
-        m_other.put("<", "\u0f3a");
-        m_other.put(">", "\u0f3b");
-        m_other.put("(", "\u0f3c");
-        m_other.put(")", "\u0f3d");
-        m_other.put("@", "\u0f04");
-        m_other.put("#", "\u0f05");
-        m_other.put("$", "\u0f06");
-        m_other.put("%", "\u0f07");
-
-        // special characters: flag those if they occur out of context
-        m_special = new HashSet<String>();
-        m_special.add(".");
-        m_special.add("+");
-        m_special.add("-");
-        m_special.add("~");
-        m_special.add("^");
-        m_special.add("?");
-        m_special.add("`");
-        m_special.add("]");
-
-        // superscripts: hashmap of superscript => set of letters or stacks below
-        m_superscripts = new HashMap<String, HashSet<String>>();
-        tmpSet = new HashSet<String>();
-        tmpSet.add("k");
-        tmpSet.add("g");
-        tmpSet.add("ng");
-        tmpSet.add("j");
-        tmpSet.add("ny");
-        tmpSet.add("t");
-        tmpSet.add("d");
-        tmpSet.add("n");
-        tmpSet.add("b");
-        tmpSet.add("m");
-        tmpSet.add("ts");
-        tmpSet.add("dz");
-        tmpSet.add("k+y");
-        tmpSet.add("g+y");
-        tmpSet.add("m+y");
-        tmpSet.add("b+w");
-        tmpSet.add("ts+w");
-        tmpSet.add("g+w");
-        m_superscripts.put("r", tmpSet);
-
-        tmpSet = new HashSet<String>();
-        tmpSet.add("k");
-        tmpSet.add("g");
-        tmpSet.add("ng");
-        tmpSet.add("c");
-        tmpSet.add("j");
-        tmpSet.add("t");
-        tmpSet.add("d");
-        tmpSet.add("p");
-        tmpSet.add("b");
-        tmpSet.add("h");
-        m_superscripts.put("l", tmpSet);
-
-        tmpSet = new HashSet<String>();
-        tmpSet.add("k");
-        tmpSet.add("g");
-        tmpSet.add("ng");
-        tmpSet.add("ny");
-        tmpSet.add("t");
-        tmpSet.add("d");
-        tmpSet.add("n");
-        tmpSet.add("p");
-        tmpSet.add("b");
-        tmpSet.add("m");
-        tmpSet.add("ts");
-        tmpSet.add("k+y");
-        tmpSet.add("g+y");
-        tmpSet.add("p+y");
-        tmpSet.add("b+y");
-        tmpSet.add("m+y");
-        tmpSet.add("k+r");
-        tmpSet.add("g+r");
-        tmpSet.add("p+r");
-        tmpSet.add("b+r");
-        tmpSet.add("m+r");
-        tmpSet.add("n+r");
-        m_superscripts.put("s", tmpSet);
-
-        // subscripts => set of letters above
-        m_subscripts = new HashMap<String, HashSet<String>>();
-        tmpSet = new HashSet<String>();
-        tmpSet.add("k");
-        tmpSet.add("kh");
-        tmpSet.add("g");
-        tmpSet.add("p");
-        tmpSet.add("ph");
-        tmpSet.add("b");
-        tmpSet.add("m");
-        tmpSet.add("r+k");
-        tmpSet.add("r+g");
-        tmpSet.add("r+m");
-        tmpSet.add("s+k");
-        tmpSet.add("s+g");
-        tmpSet.add("s+p");
-        tmpSet.add("s+b");
-        tmpSet.add("s+m");
-        m_subscripts.put("y", tmpSet);
-
-        tmpSet = new HashSet<String>();
-        tmpSet.add("k");
-        tmpSet.add("kh");
-        tmpSet.add("g");
-        tmpSet.add("t");
-        tmpSet.add("th");
-        tmpSet.add("d");
-        tmpSet.add("n");
-        tmpSet.add("p");
-        tmpSet.add("ph");
-        tmpSet.add("b");
-        tmpSet.add("m");
-        tmpSet.add("sh");
-        tmpSet.add("s");
-        tmpSet.add("h");
-        tmpSet.add("dz");
-        tmpSet.add("s+k");
-        tmpSet.add("s+g");
-        tmpSet.add("s+p");
-        tmpSet.add("s+b");
-        tmpSet.add("s+m");
-        tmpSet.add("s+n");
-        m_subscripts.put("r", tmpSet);
-
-        tmpSet = new HashSet<String>();
-        tmpSet.add("k");
-        tmpSet.add("g");
-        tmpSet.add("b");
-        tmpSet.add("r");
-        tmpSet.add("s");
-        tmpSet.add("z");
-        m_subscripts.put("l", tmpSet);
-
-        tmpSet = new HashSet<String>();
-        tmpSet.add("k");
-        tmpSet.add("kh");
-        tmpSet.add("g");
-        tmpSet.add("c");
-        tmpSet.add("ny");
-        tmpSet.add("t");
-        tmpSet.add("d");
-        tmpSet.add("ts");
-        tmpSet.add("tsh");
-        tmpSet.add("zh");
-        tmpSet.add("z");
-        tmpSet.add("r");
-        tmpSet.add("l");
-        tmpSet.add("sh");
-        tmpSet.add("s");
-        tmpSet.add("h");
-        tmpSet.add("g+r");
-        tmpSet.add("d+r");
-        tmpSet.add("ph+y");
-        tmpSet.add("r+g");
-        tmpSet.add("r+ts");
-        m_subscripts.put("w", tmpSet);
-
-        // prefixes => set of consonants or stacks after
-        m_prefixes = new HashMap<String, HashSet<String>>();
-        tmpSet = new HashSet<String>();
-        tmpSet.add("c");
-        tmpSet.add("ny");
-        tmpSet.add("t");
-        tmpSet.add("d");
-        tmpSet.add("n");
-        tmpSet.add("ts");
-        tmpSet.add("zh");
-        tmpSet.add("z");
-        tmpSet.add("y");
-        tmpSet.add("sh");
-        tmpSet.add("s");
-        m_prefixes.put("g", tmpSet);
-
-        tmpSet = new HashSet<String>();
-        tmpSet.add("k");
-        tmpSet.add("g");
-        tmpSet.add("ng");
-        tmpSet.add("p");
-        tmpSet.add("b");
-        tmpSet.add("m");
-        tmpSet.add("k+y");
-        tmpSet.add("g+y");
-        tmpSet.add("p+y");
-        tmpSet.add("b+y");
-        tmpSet.add("m+y");
-        tmpSet.add("k+r");
-        tmpSet.add("g+r");
-        tmpSet.add("p+r");
-        tmpSet.add("b+r");
-        m_prefixes.put("d", tmpSet);
-
-        tmpSet = new HashSet<String>();
-        tmpSet.add("k");
-        tmpSet.add("g");
-        tmpSet.add("c");
-        tmpSet.add("t");
-        tmpSet.add("d");
-        tmpSet.add("ts");
-        tmpSet.add("zh");
-        tmpSet.add("z");
-        tmpSet.add("sh");
-        tmpSet.add("s");
-        tmpSet.add("r");
-        tmpSet.add("l");
-        tmpSet.add("k+y");
-        tmpSet.add("g+y");
-        tmpSet.add("k+r");
-        tmpSet.add("g+r");
-        tmpSet.add("r+l");
-        tmpSet.add("s+l");
-        tmpSet.add("r+k");
-        tmpSet.add("r+g");
-        tmpSet.add("r+ng");
-        tmpSet.add("r+j");
-        tmpSet.add("r+ny");
-        tmpSet.add("r+t");
-        tmpSet.add("r+d");
-        tmpSet.add("r+n");
-        tmpSet.add("r+ts");
-        tmpSet.add("r+dz");
-        tmpSet.add("s+k");
-        tmpSet.add("s+g");
-        tmpSet.add("s+ng");
-        tmpSet.add("s+ny");
-        tmpSet.add("s+t");
-        tmpSet.add("s+d");
-        tmpSet.add("s+n");
-        tmpSet.add("s+ts");
-        tmpSet.add("r+k+y");
-        tmpSet.add("r+g+y");
-        tmpSet.add("s+k+y");
-        tmpSet.add("s+g+y");
-        tmpSet.add("s+k+r");
-        tmpSet.add("s+g+r");
-        tmpSet.add("l+d");
-        tmpSet.add("l+t");
-        tmpSet.add("k+l");
-        tmpSet.add("s+r");
-        tmpSet.add("z+l");
-        tmpSet.add("s+w");
-        m_prefixes.put("b", tmpSet);
-
-        tmpSet = new HashSet<String>();
-        tmpSet.add("kh");
-        tmpSet.add("g");
-        tmpSet.add("ng");
-        tmpSet.add("ch");
-        tmpSet.add("j");
-        tmpSet.add("ny");
-        tmpSet.add("th");
-        tmpSet.add("d");
-        tmpSet.add("n");
-        tmpSet.add("tsh");
-        tmpSet.add("dz");
-        tmpSet.add("kh+y");
-        tmpSet.add("g+y");
-        tmpSet.add("kh+r");
-        tmpSet.add("g+r");
-        m_prefixes.put("m", tmpSet);
-
-        tmpSet = new HashSet<String>();
-        tmpSet.add("kh");
-        tmpSet.add("g");
-        tmpSet.add("ch");
-        tmpSet.add("j");
-        tmpSet.add("th");
-        tmpSet.add("d");
-        tmpSet.add("ph");
-        tmpSet.add("b");
-        tmpSet.add("tsh");
-        tmpSet.add("dz");
-        tmpSet.add("kh+y");
-        tmpSet.add("g+y");
-        tmpSet.add("ph+y");
-        tmpSet.add("b+y");
-        tmpSet.add("kh+r");
-        tmpSet.add("g+r");
-        tmpSet.add("d+r");
-        tmpSet.add("ph+r");
-        tmpSet.add("b+r");
-        m_prefixes.put("'", tmpSet);
-
-        // set of suffix letters
-        // also included are some Skt letters b/c they occur often in suffix position in
-        // Skt words
-        m_suffixes = new HashSet<String>();
-        m_suffixes.add("'");
-        m_suffixes.add("g");
-        m_suffixes.add("ng");
-        m_suffixes.add("d");
-        m_suffixes.add("n");
-        m_suffixes.add("b");
-        m_suffixes.add("m");
-        m_suffixes.add("r");
-        m_suffixes.add("l");
-        m_suffixes.add("s");
-        m_suffixes.add("N");
-        m_suffixes.add("T");
-        m_suffixes.add("-n");
-        m_suffixes.add("-t");
-
-        // suffix2 => set of letters before
-        m_suff2 = new HashMap<String, HashSet<String>>();
-        tmpSet = new HashSet<String>();
-        tmpSet.add("g");
-        tmpSet.add("ng");
-        tmpSet.add("b");
-        tmpSet.add("m");
-        m_suff2.put("s", tmpSet);
-
-        tmpSet = new HashSet<String>();
-        tmpSet.add("n");
-        tmpSet.add("r");
-        tmpSet.add("l");
-        m_suff2.put("d", tmpSet);
-
-        m_affixedsuff2 = new HashSet<String>();
-        m_affixedsuff2.add("ng");
-        m_affixedsuff2.add("m");
-
-        // root letter index for very ambiguous three-stack syllables
-        m_ambiguous_key = new HashMap<String, Integer>();
-        m_ambiguous_key.put("dgs", 1);
-        m_ambiguous_key.put("dms", 1);
-        m_ambiguous_key.put("dngs", 0);
-        m_ambiguous_key.put("'gs", 1);
-        m_ambiguous_key.put("'bs", 1);
-        m_ambiguous_key.put("mngs", 0);
-        m_ambiguous_key.put("mgs", 0);
-        m_ambiguous_key.put("bgs", 0);
-        m_ambiguous_key.put("dbs", 1);
-
-        m_ambiguous_wylie = new HashMap<String, String>();
-        m_ambiguous_wylie.put("dgs", "dgas");
-        m_ambiguous_wylie.put("dngs", "dangs");
-        m_ambiguous_wylie.put("dms", "dmas");
-        m_ambiguous_wylie.put("'gs", "'gas");
-        m_ambiguous_wylie.put("'bs", "'bas");
-        m_ambiguous_wylie.put("mngs", "mangs");
-        m_ambiguous_wylie.put("mgs", "mags");
-        m_ambiguous_wylie.put("bgs", "bags");
-        m_ambiguous_wylie.put("dbs", "dbas");
-
-        // *** Unicode to Converter mappings ***
-
-        // top letters
-        m_tib_top = new HashMap<Character, String>();
-        m_tib_top.put('\u0f40', "k");
-        m_tib_top.put('\u0f41', "kh");
-        m_tib_top.put('\u0f42', "g");
-        m_tib_top.put('\u0f43', "g+h");
-        m_tib_top.put('\u0f44', "ng");
-        m_tib_top.put('\u0f45', "c");
-        m_tib_top.put('\u0f46', "ch");
-        m_tib_top.put('\u0f47', "j");
-        m_tib_top.put('\u0f49', "ny");
-        m_tib_top.put('\u0f4a', "T");
-        m_tib_top.put('\u0f4b', "Th");
-        m_tib_top.put('\u0f4c', "D");
-        m_tib_top.put('\u0f4d', "D+h");
-        m_tib_top.put('\u0f4e', "N");
-        m_tib_top.put('\u0f4f', "t");
-        m_tib_top.put('\u0f50', "th");
-        m_tib_top.put('\u0f51', "d");
-        m_tib_top.put('\u0f52', "d+h");
-        m_tib_top.put('\u0f53', "n");
-        m_tib_top.put('\u0f54', "p");
-        m_tib_top.put('\u0f55', "ph");
-        m_tib_top.put('\u0f56', "b");
-        m_tib_top.put('\u0f57', "b+h");
-        m_tib_top.put('\u0f58', "m");
-        m_tib_top.put('\u0f59', "ts");
-        m_tib_top.put('\u0f5a', "tsh");
-        m_tib_top.put('\u0f5b', "dz");
-        m_tib_top.put('\u0f5c', "dz+h");
-        m_tib_top.put('\u0f5d', "w");
-        m_tib_top.put('\u0f5e', "zh");
-        m_tib_top.put('\u0f5f', "z");
-        m_tib_top.put('\u0f60', "'");
-        m_tib_top.put('\u0f61', "y");
-        m_tib_top.put('\u0f62', "r");
-        m_tib_top.put('\u0f63', "l");
-        m_tib_top.put('\u0f64', "sh");
-        m_tib_top.put('\u0f65', "Sh");
-        m_tib_top.put('\u0f66', "s");
-        m_tib_top.put('\u0f67', "h");
-        m_tib_top.put('\u0f68', "a");
-        m_tib_top.put('\u0f69', "k+Sh");
-        m_tib_top.put('\u0f6a', "R");
-
-        // subjoined letters
-        m_tib_subjoined = new HashMap<Character, String>();
-        m_tib_subjoined.put('\u0f90', "k");
-        m_tib_subjoined.put('\u0f91', "kh");
-        m_tib_subjoined.put('\u0f92', "g");
-        m_tib_subjoined.put('\u0f93', "g+h");
-        m_tib_subjoined.put('\u0f94', "ng");
-        m_tib_subjoined.put('\u0f95', "c");
-        m_tib_subjoined.put('\u0f96', "ch");
-        m_tib_subjoined.put('\u0f97', "j");
-        m_tib_subjoined.put('\u0f99', "ny");
-        m_tib_subjoined.put('\u0f9a', "T");
-        m_tib_subjoined.put('\u0f9b', "Th");
-        m_tib_subjoined.put('\u0f9c', "D");
-        m_tib_subjoined.put('\u0f9d', "D+h");
-        m_tib_subjoined.put('\u0f9e', "N");
-        m_tib_subjoined.put('\u0f9f', "t");
-        m_tib_subjoined.put('\u0fa0', "th");
-        m_tib_subjoined.put('\u0fa1', "d");
-        m_tib_subjoined.put('\u0fa2', "d+h");
-        m_tib_subjoined.put('\u0fa3', "n");
-        m_tib_subjoined.put('\u0fa4', "p");
-        m_tib_subjoined.put('\u0fa5', "ph");
-        m_tib_subjoined.put('\u0fa6', "b");
-        m_tib_subjoined.put('\u0fa7', "b+h");
-        m_tib_subjoined.put('\u0fa8', "m");
-        m_tib_subjoined.put('\u0fa9', "ts");
-        m_tib_subjoined.put('\u0faa', "tsh");
-        m_tib_subjoined.put('\u0fab', "dz");
-        m_tib_subjoined.put('\u0fac', "dz+h");
-        m_tib_subjoined.put('\u0fad', "w");
-        m_tib_subjoined.put('\u0fae', "zh");
-        m_tib_subjoined.put('\u0faf', "z");
-        m_tib_subjoined.put('\u0fb0', "'");
-        m_tib_subjoined.put('\u0fb1', "y");
-        m_tib_subjoined.put('\u0fb2', "r");
-        m_tib_subjoined.put('\u0fb3', "l");
-        m_tib_subjoined.put('\u0fb4', "sh");
-        m_tib_subjoined.put('\u0fb5', "Sh");
-        m_tib_subjoined.put('\u0fb6', "s");
-        m_tib_subjoined.put('\u0fb7', "h");
-        m_tib_subjoined.put('\u0fb8', "a");
-        m_tib_subjoined.put('\u0fb9', "k+Sh");
-        m_tib_subjoined.put('\u0fba', "W");
-        m_tib_subjoined.put('\u0fbb', "Y");
-        m_tib_subjoined.put('\u0fbc', "R");
-
-        // vowel signs:
-        // a-chen is not here because that's a top character, not a vowel sign.
-        // pre-composed "I" and "U" are dealt here; other pre-composed Skt vowels are
-        // more
-        // easily handled by a global replace in toWylie(), b/c they turn into subjoined
-        // "r"/"l".
-
-        m_tib_vowel = new HashMap<Character, String>();
-        m_tib_vowel.put('\u0f71', "A");
-        m_tib_vowel.put('\u0f72', "i");
-        m_tib_vowel.put('\u0f73', "I");
-        m_tib_vowel.put('\u0f74', "u");
-        m_tib_vowel.put('\u0f75', "U");
-        m_tib_vowel.put('\u0f7a', "e");
-        m_tib_vowel.put('\u0f7b', "ai");
-        m_tib_vowel.put('\u0f7c', "o");
-        m_tib_vowel.put('\u0f7d', "au");
-        m_tib_vowel.put('\u0f80', "-i");
-
-        // long (Skt) vowels
-        m_tib_vowel_long = new HashMap<String, String>();
-        m_tib_vowel_long.put("i", "I");
-        m_tib_vowel_long.put("u", "U");
-        m_tib_vowel_long.put("-i", "-I");
-        // this is not in the original Wylie spec but this is
-        // encountered in Chinese names
-        m_tib_vowel_long.put("e", "E");
-        m_tib_vowel_long.put("o", "O");
-
-        // final symbols => wylie
-        m_tib_final_wylie = new HashMap<Character, String>();
-        m_tib_final_wylie.put('\u0f7e', "M");
-        m_tib_final_wylie.put('\u0f82', "~M`");
-        m_tib_final_wylie.put('\u0f83', "~M");
-        m_tib_final_wylie.put('\u0f37', "X");
-        m_tib_final_wylie.put('\u0f35', "~X");
-        m_tib_final_wylie.put('\u0f39', "^");
-        m_tib_final_wylie.put('\u0f7f', "H");
-        m_tib_final_wylie.put('\u0f84', "?");
-        m_tib_final_wylie.put('\u0f85', "&");
-
-        // final symbols by class
-        m_tib_final_class = new HashMap<Character, String>();
-        m_tib_final_class.put('\u0f7e', "M");
-        m_tib_final_class.put('\u0f82', "M");
-        m_tib_final_class.put('\u0f83', "M");
-        m_tib_final_class.put('\u0f37', "X");
-        m_tib_final_class.put('\u0f35', "X");
-        m_tib_final_class.put('\u0f39', "^");
-        m_tib_final_class.put('\u0f7f', "H");
-        m_tib_final_class.put('\u0f84', "?");
-        m_tib_final_class.put('\u0f85', "&");
-
-        // special characters introduced by ^
-        m_tib_caret = new HashMap<String, String>();
-        m_tib_caret.put("ph", "f");
-        m_tib_caret.put("b", "v");
-
-        // other stand-alone characters
-        m_tib_other = new HashMap<Character, String>();
-        m_tib_other.put(' ', "_");
-        m_tib_other.put('\u0f04', "@");
-        m_tib_other.put('\u0f05', "#");
-        m_tib_other.put('\u0f06', "$");
-        m_tib_other.put('\u0f07', "%");
-        m_tib_other.put('\u0f08', "!");
-        m_tib_other.put('\u0f0b', " ");
-        m_tib_other.put('\u0f0c', "*");
-        m_tib_other.put('\u0f0d', "/");
-        m_tib_other.put('\u0f0e', "//");
-        m_tib_other.put('\u0f0f', ";");
-        m_tib_other.put('\u0f11', "|");
-        m_tib_other.put('\u0f14', ":");
-        m_tib_other.put('\u0f20', "0");
-        m_tib_other.put('\u0f21', "1");
-        m_tib_other.put('\u0f22', "2");
-        m_tib_other.put('\u0f23', "3");
-        m_tib_other.put('\u0f24', "4");
-        m_tib_other.put('\u0f25', "5");
-        m_tib_other.put('\u0f26', "6");
-        m_tib_other.put('\u0f27', "7");
-        m_tib_other.put('\u0f28', "8");
-        m_tib_other.put('\u0f29', "9");
-        m_tib_other.put('\u0f34', "=");
-        m_tib_other.put('\u0f3a', "<");
-        m_tib_other.put('\u0f3b', ">");
-        m_tib_other.put('\u0f3c', "(");
-        m_tib_other.put('\u0f3d', ")");
-
-        // all these stacked consonant combinations don't need "+"s in them
-        m_tib_stacks = new HashSet<String>();
-        m_tib_stacks.add("b+l");
-        m_tib_stacks.add("b+r");
-        m_tib_stacks.add("b+y");
-        m_tib_stacks.add("c+w");
-        m_tib_stacks.add("d+r");
-        m_tib_stacks.add("d+r+w");
-        m_tib_stacks.add("d+w");
-        m_tib_stacks.add("dz+r");
-        m_tib_stacks.add("g+l");
-        m_tib_stacks.add("g+r");
-        m_tib_stacks.add("g+r+w");
-        m_tib_stacks.add("g+w");
-        m_tib_stacks.add("g+y");
-        m_tib_stacks.add("h+r");
-        m_tib_stacks.add("h+w");
-        m_tib_stacks.add("k+l");
-        m_tib_stacks.add("k+r");
-        m_tib_stacks.add("k+w");
-        m_tib_stacks.add("k+y");
-        m_tib_stacks.add("kh+r");
-        m_tib_stacks.add("kh+w");
-        m_tib_stacks.add("kh+y");
-        m_tib_stacks.add("l+b");
-        m_tib_stacks.add("l+c");
-        m_tib_stacks.add("l+d");
-        m_tib_stacks.add("l+g");
-        m_tib_stacks.add("l+h");
-        m_tib_stacks.add("l+j");
-        m_tib_stacks.add("l+k");
-        m_tib_stacks.add("l+ng");
-        m_tib_stacks.add("l+p");
-        m_tib_stacks.add("l+t");
-        m_tib_stacks.add("l+w");
-        m_tib_stacks.add("m+r");
-        m_tib_stacks.add("m+y");
-        m_tib_stacks.add("n+r");
-        m_tib_stacks.add("ny+w");
-        m_tib_stacks.add("p+r");
-        m_tib_stacks.add("p+y");
-        m_tib_stacks.add("ph+r");
-        m_tib_stacks.add("ph+y");
-        m_tib_stacks.add("ph+y+w");
-        m_tib_stacks.add("r+b");
-        m_tib_stacks.add("r+d");
-        m_tib_stacks.add("r+dz");
-        m_tib_stacks.add("r+g");
-        m_tib_stacks.add("r+g+w");
-        m_tib_stacks.add("r+g+y");
-        m_tib_stacks.add("r+j");
-        m_tib_stacks.add("r+k");
-        m_tib_stacks.add("r+k+y");
-        m_tib_stacks.add("r+l");
-        m_tib_stacks.add("r+m");
-        m_tib_stacks.add("r+m+y");
-        m_tib_stacks.add("r+n");
-        m_tib_stacks.add("r+ng");
-        m_tib_stacks.add("r+ny");
-        m_tib_stacks.add("r+t");
-        m_tib_stacks.add("r+ts");
-        m_tib_stacks.add("r+ts+w");
-        m_tib_stacks.add("r+w");
-        m_tib_stacks.add("s+b");
-        m_tib_stacks.add("s+b+r");
-        m_tib_stacks.add("s+b+y");
-        m_tib_stacks.add("s+d");
-        m_tib_stacks.add("s+g");
-        m_tib_stacks.add("s+g+r");
-        m_tib_stacks.add("s+g+y");
-        m_tib_stacks.add("s+k");
-        m_tib_stacks.add("s+k+r");
-        m_tib_stacks.add("s+k+y");
-        m_tib_stacks.add("s+l");
-        m_tib_stacks.add("s+m");
-        m_tib_stacks.add("s+m+r");
-        m_tib_stacks.add("s+m+y");
-        m_tib_stacks.add("s+n");
-        m_tib_stacks.add("s+n+r");
-        m_tib_stacks.add("s+ng");
-        m_tib_stacks.add("s+ny");
-        m_tib_stacks.add("s+p");
-        m_tib_stacks.add("s+p+r");
-        m_tib_stacks.add("s+p+y");
-        m_tib_stacks.add("s+r");
-        m_tib_stacks.add("s+t");
-        m_tib_stacks.add("s+ts");
-        m_tib_stacks.add("s+w");
-        m_tib_stacks.add("sh+r");
-        m_tib_stacks.add("sh+w");
-        m_tib_stacks.add("t+r");
-        m_tib_stacks.add("t+w");
-        m_tib_stacks.add("th+r");
-        m_tib_stacks.add("ts+w");
-        m_tib_stacks.add("tsh+w");
-        m_tib_stacks.add("z+l");
-        m_tib_stacks.add("z+w");
-        m_tib_stacks.add("zh+w");
-
-        // a map used to split the input string into tokens for toUnicode().
-        // all letters which start tokens longer than one letter are mapped to the max
-        // length of
-        // tokens starting with that letter.
-        m_tokens_start = new HashMap<Character, Integer>();
-        m_tokens_start.put('S', 2);
-        m_tokens_start.put('/', 2);
-        m_tokens_start.put('d', 4);
-        m_tokens_start.put('g', 3);
-        m_tokens_start.put('b', 3);
-        m_tokens_start.put('D', 3);
-        m_tokens_start.put('z', 2);
-        m_tokens_start.put('~', 3);
-        m_tokens_start.put('-', 4);
-        m_tokens_start.put('T', 2);
-        m_tokens_start.put('a', 2);
-        m_tokens_start.put('k', 2);
-        m_tokens_start.put('t', 3);
-        m_tokens_start.put('s', 2);
-        m_tokens_start.put('c', 2);
-        m_tokens_start.put('n', 2);
-        m_tokens_start.put('p', 2);
-        m_tokens_start.put('\r', 2);
-
-        // also for tokenization - a set of tokens longer than one letter
-        m_tokens = new HashSet<String>();
-        m_tokens.add("-d+h");
-        m_tokens.add("dz+h");
-        m_tokens.add("-dh");
-        m_tokens.add("-sh");
-        m_tokens.add("-th");
-        m_tokens.add("D+h");
-        m_tokens.add("b+h");
-        m_tokens.add("d+h");
-        m_tokens.add("dzh");
-        m_tokens.add("g+h");
-        m_tokens.add("tsh");
-        m_tokens.add("~M`");
-        m_tokens.add("-I");
-        m_tokens.add("-d");
-        m_tokens.add("-i");
-        m_tokens.add("-n");
-        m_tokens.add("-t");
-        m_tokens.add("//");
-        m_tokens.add("Dh");
-        m_tokens.add("Sh");
-        m_tokens.add("Th");
-        m_tokens.add("ai");
-        m_tokens.add("au");
-        m_tokens.add("bh");
-        m_tokens.add("ch");
-        m_tokens.add("dh");
-        m_tokens.add("dz");
-        m_tokens.add("gh");
-        m_tokens.add("kh");
-        m_tokens.add("ng");
-        m_tokens.add("ny");
-        m_tokens.add("ph");
-        m_tokens.add("sh");
-        m_tokens.add("th");
-        m_tokens.add("ts");
-        m_tokens.add("zh");
-        m_tokens.add("~M");
-        m_tokens.add("~X");
-        m_tokens.add("\r\n");
-    }
-
-    private static void initSloppyRepl() {
-        int i = 0;
-        base[i] = "ʼ";
-        repl[i] = "'";
-        i++; // 0x02BC
-        base[i] = "ʹ";
-        repl[i] = "'";
-        i++; // 0x02B9
-        base[i] = "‘";
-        repl[i] = "'";
-        i++; // 0x2018
-        base[i] = "’";
-        repl[i] = "'";
-        i++; // 0x2019
-        base[i] = "ʾ";
-        repl[i] = "'";
-        i++; // 0x02BE
-        base[i] = "x";
-        repl[i] = "\\u0fbe";
-        i++;
-        base[i] = "X";
-        repl[i] = "\\u0fbe";
-        i++;
-        base[i] = "...";
-        repl[i] = "\\u0f0b\\u0f0b\\u0f0b";
-        i++;
-        base[i] = " (";
-        repl[i] = "_(";
-        i++;
-        base[i] = ") ";
-        repl[i] = ")_";
-        i++;
-        base[i] = "/ ";
-        repl[i] = "/_";
-        i++;
-        base[i] = " 0";
-        repl[i] = "_0";
-        i++;
-        base[i] = " 1";
-        repl[i] = "_1";
-        i++;
-        base[i] = " 2";
-        repl[i] = "_2";
-        i++;
-        base[i] = " 3";
-        repl[i] = "_3";
-        i++;
-        base[i] = " 4";
-        repl[i] = "_4";
-        i++;
-        base[i] = " 5";
-        repl[i] = "_5";
-        i++;
-        base[i] = " 6";
-        repl[i] = "_6";
-        i++;
-        base[i] = " 7";
-        repl[i] = "_7";
-        i++;
-        base[i] = " 8";
-        repl[i] = "_8";
-        i++;
-        base[i] = " 9";
-        repl[i] = "_9";
-        i++;
-        base[i] = "_ ";
-        repl[i] = "__";
-        i++;
-        base[i] = "G";
-        repl[i] = "g";
-        i++;
-        base[i] = "K";
-        repl[i] = "k";
-        i++;
-        base[i] = "C";
-        repl[i] = "c";
-        i++;
-        base[i] = "B";
-        repl[i] = "b";
-        i++;
-        base[i] = " b ";
-        repl[i] = " ba ";
-        i++;
-        base[i] = "Ts";
-        repl[i] = "ts";
-        i++;
-        base[i] = "Dz";
-        repl[i] = "dz";
-        i++;
-        base[i] = "Ny";
-        repl[i] = "ny";
-        i++;
-        base[i] = "Ng";
-        repl[i] = "ng";
-        i++;
-        base[i] = " m ";
-        repl[i] = " ma ";
-        i++;
-        base[i] = " m'i ";
-        repl[i] = " ma'i ";
-        i++;
-        base[i] = " b'i ";
-        repl[i] = " ba'i ";
-        i++;
-        base[i] = "P";
-        repl[i] = "p";
-        i++;
-        base[i] = "L";
-        repl[i] = "l";
-        i++;
-        base[i] = "Z";
-        repl[i] = "z";
-        i++;
-        base[i] = "J";
-        repl[i] = "j";
-        i++;
-        base[i] = "（";
-        repl[i] = "(";
-        i++;
-        base[i] = "）";
-        repl[i] = ")";
-        i++;
-        base[i] = "༼";
-        repl[i] = "(";
-        i++;
-        base[i] = "༽";
-        repl[i] = ")";
-        i++;
-        base[i] = "：";
-        repl[i] = ":";
-        i++;
-        base[i] = "H ";
-        repl[i] = "H";
-        i++;
-        base[i] = "adm";
-        repl[i] = "ad+m";
-        i++;
+        /** Same as EWTS. */
+        WYLIE,
+        /** Extended Wylie (EWTS), converted as it is. */
+        EWTS,
+        /** Same as DTS. */
+        DWTS,
+        /** DTS, converted to EWTS first (see TransConverter.dtsToEwts()). */
+        DTS,
+        /** ALA-LC, converted to EWTS first (see TransConverter.alalcToEwts()). */
+        ALALC,
+        /** ACIP, not supported yet: converted as EWTS. */
+        ACIP
     }
-    
-    private static void initLenientRepl() {
-        int i = 0;
-        baseL[i] = "ʼ";
-        replL[i] = "'";
-        i++; // 0x02BC
-        baseL[i] = "ʹ";
-        replL[i] = "'";
-        i++; // 0x02B9
-        baseL[i] = "‘";
-        replL[i] = "'";
-        i++; // 0x2018
-        baseL[i] = "’";
-        replL[i] = "'";
-        i++; // 0x2019
-        baseL[i] = "ʾ";
-        replL[i] = "'";
-        i++; // 0x02BE
-        baseL[i] = "x";
-        replL[i] = "\\u0fbe";
-        i++;
-        baseL[i] = "X";
-        replL[i] = "\\u0fbe";
-        i++;
-        baseL[i] = "...";
-        replL[i] = "\\u0f0b\\u0f0b\\u0f0b";
-        i++;
-        baseL[i] = "-i";
-        replL[i] = "i";
-        i++;
-        baseL[i] = "-";
-        replL[i] = " ";
-        i++;
-        baseL[i] = "：";
-        replL[i] = ":";
-        i++;
-        baseL[i] = "adm";
-        replL[i] = "ad+m";
-        i++;
-        baseL[i] = "\u0304";
-        replL[i] = "";
-        i++;
-        baseL[i] = "ḥ";
-        replL[i] = "'";
-        i++;
-        baseL[i] = "h\u0323";
-        replL[i] = "'";
-        i++;
-        baseL[i] = "ṣ";
-        replL[i] = "sh";
-        i++;
-        baseL[i] = "ṣ";
-        replL[i] = "sh";
-        i++;
-        baseL[i] = "m\0323";
-        replL[i] = "M";
-        i++;
-        baseL[i] = "ṃ";
-        replL[i] = "M";
-        i++;
-        baseL[i] = "s\u0323";
-        replL[i] = "sh";
-        i++;
-        baseL[i] = "\u0323";
-        replL[i] = "";
-        i++;
-        baseL[i] = "\u0310";
-        replL[i] = "";
-        i++;
-        baseL[i] = "ś";
-        replL[i] = "sh";
-        i++;
-        baseL[i] = "ź";
-        replL[i] = "zh";
-        i++;
-        baseL[i] = "\u0301";
-        replL[i] = "h"; // in ś and ź
-        i++;
-        baseL[i] = "ñ";
-        replL[i] = "ny";
-        i++;
-        baseL[i] = "n\u0303";
-        replL[i] = "ny";
-        i++;
-        baseL[i] = "ṅ";
-        replL[i] = "ng";
-        i++;
-        baseL[i] = "n\u0307";
-        replL[i] = "ng";
-        i++;
-        baseL[i] = "ā";
-        replL[i] = "a";
-        i++;
-        baseL[i] = "ī";
-        replL[i] = "i";
-        i++;
-        baseL[i] = "ū";
-        replL[i] = "u";
-        i++;
-        baseL[i] = "ṁ";
-        replL[i] = "M";
-        i++;
-        baseL[i] = "ṭ";
-        replL[i] = "t";
-        i++;
-        baseL[i] = "ḍ";
-        replL[i] = "d";
-        i++;
-        baseL[i] = "ṇ";
-        replL[i] = "n";
-        i++;
-        // q and ! are H and M escaping lower casing
-        baseL[i] = "q ";
-        replL[i] = "H";
-        i++;
-        baseL[i] = "q";
-        replL[i] = "H";
-        i++;
-        baseL[i] = "!";
-        replL[i] = "M";
-        i++;
-    }
-
-    static {
-        initHashes();
-        initLenientRepl();
-        initSloppyRepl();
-    }
-
-    // setup a wylie object
-    private void initWylie(boolean check, boolean check_strict, boolean print_warnings, boolean fix_spacing,
-            Mode mode) {
 
-        // check_strict requires check
-        if (check_strict && !check) {
-            throw new RuntimeException("check_strict requires check.");
-        }
+    private final Mode mode;
 
-        this.check = check;
-        this.check_strict = check_strict;
-        this.print_warnings = print_warnings;
-        this.fix_spacing = fix_spacing;
-        this.mode = mode;
+    // The tables of the conversions are generated at build time from
+    // src/build/tables.txt into the classes EwtsTables (Wylie to Unicode, with the
+    // tokenizer automaton), SyllableTables and TibTables (Unicode to Wylie): arrays
+    // and string switches, that the JVM only initializes the first time they are
+    // used. The replacers of the normalizations, from NormalizationTables, are in
+    // holder classes, only compiled when they are used. The initialization of a class publishes its
+    // tables safely to all threads, and they are never written afterwards.
+
+    private static final class SloppyReplacer {
+        private static final Replacer m_sloppy_repl = new Replacer(NormalizationTables.m_sloppy_from,
+                NormalizationTables.m_sloppy_to, false);
+    }
+
+    private static final class LenientReplacer {
+        private static final Replacer m_lenient_repl = new Replacer(NormalizationTables.m_lenient_from,
+                NormalizationTables.m_lenient_to, false);
     }
 
+
     /**
      * Default constructor, sets the following defaults:
      * 
@@ -1244,7 +132,7 @@ public class EwtsConverter {
      *            etc
      */
     public EwtsConverter(boolean check, boolean check_strict, boolean print_warnings, boolean fix_spacing) {
-        initWylie(check, check_strict, print_warnings, fix_spacing, Mode.EWTS);
+        this(check, check_strict, print_warnings, fix_spacing, Mode.EWTS, null);
     }
 
     /**
@@ -1263,7 +151,40 @@ public class EwtsConverter {
      *            one of WYLIE, EWTS, ALALC, DTS and ACIP
      */
     public EwtsConverter(boolean check, boolean check_strict, boolean print_warnings, boolean fix_spacing, Mode mode) {
-        initWylie(check, check_strict, print_warnings, fix_spacing, mode);
+        this(check, check_strict, print_warnings, fix_spacing, mode, null);
+    }
+
+    /**
+     * Constructor with a cache of converted tsekbars, sets the following defaults:
+     * 
+     * @param check
+     *            generate warnings for illegal consonant sequences
+     * @param check_strict
+     *            stricter checking, examine the whole stack
+     * @param print_warnings
+     *            print generated warnings to stdout
+     * @param fix_spacing
+     *            remove spaces after newlines, collapse multiple tseks into one,
+     *            etc.
+     * @param mode
+     *            one of WYLIE, EWTS, ALALC, DTS and ACIP
+     * @param cache
+     *            the cache to use (can be shared between converters), or null
+     */
+    public EwtsConverter(boolean check, boolean check_strict, boolean print_warnings, boolean fix_spacing, Mode mode,
+            TsekbarCache cache) {
+        // check_strict requires check
+        if (check_strict && !check) {
+            throw new RuntimeException("check_strict requires check.");
+        }
+
+        this.check = check;
+        this.check_strict = check_strict;
+        this.print_warnings = print_warnings;
+        this.fix_spacing = fix_spacing;
+        this.mode = mode;
+        this.cache = cache;
+        this.cache_flags = (check ? 1 : 0) | (check_strict ? 2 : 0);
     }
 
     /**
@@ -1276,179 +197,124 @@ public class EwtsConverter {
      * </ul>
      */
     public EwtsConverter() {
-        initWylie(true, true, false, true, Mode.EWTS);
+        this(true, true, false, true, Mode.EWTS, null);
     }
 
     // helper functions to access the various hash tables
-    private final String consonant(String s) {
-        return m_consonant.get(s);
+    private final String consonant(int t) {
+        return EwtsTables.m_consonant_tok[t];
     }
 
-    private final String subjoined(String s) {
-        return m_subjoined.get(s);
+    private final String subjoined(int t) {
+        return EwtsTables.m_subjoined_tok[t];
     }
 
-    private final String vowel(String s) {
-        return m_vowel.get(s);
+    private final String vowel(int t) {
+        return EwtsTables.m_vowel_tok[t];
     }
 
-    private final String final_uni(String s) {
-        return m_final_uni.get(s);
+    private final String final_uni(int t) {
+        return EwtsTables.m_final_uni_tok[t];
     }
 
-    private final String final_class(String s) {
-        return m_final_class.get(s);
+    private final String final_class(int t) {
+        return EwtsTables.m_final_class_tok[t];
     }
 
-    private final String other(String s) {
-        return m_other.get(s);
+    private final String other(int t) {
+        return EwtsTables.m_other_tok[t];
     }
 
-    private final boolean isSpecial(String s) {
-        return m_special.contains(s);
+    private final boolean isSpecial(int t) {
+        return EwtsTables.m_special_tok[t];
     }
 
-    private final boolean isSuperscript(String s) {
-        return m_superscripts.containsKey(s);
+    private final boolean isSuperscript(int t) {
+        return EwtsTables.m_superscript_tok[t];
     }
 
     private final boolean superscript(String sup, String below) {
-        HashSet<?> tmpSet = m_superscripts.get(sup);
-        if (tmpSet == null)
-            return false;
-        return tmpSet.contains(below);
+        return EwtsTables.superscript(sup, below);
     }
 
-    private final boolean isSubscript(String s) {
-        return m_subscripts.containsKey(s);
+    private final boolean isSubscript(int t) {
+        return EwtsTables.m_subscript_tok[t];
     }
 
     private final boolean subscript(String sub, String above) {
-        HashSet<?> tmpSet = m_subscripts.get(sub);
-        if (tmpSet == null)
-            return false;
-        return tmpSet.contains(above);
+        return EwtsTables.subscript(sub, above);
     }
 
     private final boolean isPrefix(String s) {
-        return m_prefixes.containsKey(s);
+        return SyllableTables.isPrefix(s);
     }
 
     private final boolean prefix(String pref, String after) {
-        HashSet<?> tmpSet = m_prefixes.get(pref);
-        if (tmpSet == null)
-            return false;
-        return tmpSet.contains(after);
+        return SyllableTables.prefix(pref, after);
     }
 
     private final boolean isSuffix(String s) {
-        return m_suffixes.contains(s);
+        return SyllableTables.isSuffix(s);
     }
 
     private final boolean isSuff2(String s) {
-        return m_suff2.containsKey(s);
+        return SyllableTables.isSuff2(s);
     }
 
     private final boolean suff2(String suff, String before) {
-        HashSet<?> tmpSet = m_suff2.get(suff);
-        if (tmpSet == null)
-            return false;
-        return tmpSet.contains(before);
+        return SyllableTables.suff2(suff, before);
     }
 
     private final Integer ambiguous_key(String syll) {
-        return m_ambiguous_key.get(syll);
+        return SyllableTables.ambiguous_key(syll);
     }
 
     private final String ambiguous_wylie(String syll) {
-        return m_ambiguous_wylie.get(syll);
+        return SyllableTables.ambiguous_wylie(syll);
     }
 
-    private final String tib_top(Character c) {
-        return m_tib_top.get(c);
+    private final String tib_top(char c) {
+        return (c & 0xff00) == TIB_BASE ? TibTables.m_tib_top[c & 0xff] : null;
     }
 
-    private final String tib_subjoined(Character c) {
-        return m_tib_subjoined.get(c);
+    private final String tib_subjoined(char c) {
+        return (c & 0xff00) == TIB_BASE ? TibTables.m_tib_subjoined[c & 0xff] : null;
     }
 
-    private final String tib_vowel(Character c) {
-        return m_tib_vowel.get(c);
+    private final String tib_vowel(char c) {
+        return (c & 0xff00) == TIB_BASE ? TibTables.m_tib_vowel[c & 0xff] : null;
     }
 
     private final String tib_vowel_long(String s) {
-        return m_tib_vowel_long.get(s);
+        return TibTables.tib_vowel_long(s);
     }
 
-    private final String tib_final_wylie(Character c) {
-        return m_tib_final_wylie.get(c);
+    private final String tib_final_wylie(char c) {
+        return (c & 0xff00) == TIB_BASE ? TibTables.m_tib_final_wylie[c & 0xff] : null;
     }
 
-    private final String tib_final_class(Character c) {
-        return m_tib_final_class.get(c);
+    private final String tib_final_class(char c) {
+        return (c & 0xff00) == TIB_BASE ? TibTables.m_tib_final_class[c & 0xff] : null;
     }
 
     private final String tib_caret(String s) {
-        return m_tib_caret.get(s);
+        return TibTables.tib_caret(s);
     }
 
-    private final String tib_other(Character c) {
-        return m_tib_other.get(c);
+    private final String tib_other(char c) {
+        if ((c & 0xff00) == TIB_BASE)
+            return TibTables.m_tib_other[c & 0xff];
+        return c < 0x80 ? TibTables.m_tib_other_ascii[c] : null;
     }
 
     private final boolean tib_stack(String s) {
-        return m_tib_stacks.contains(s);
-    }
-
-    // split a string into Converter tokens;
-    // make sure there is room for at least one null element at the end of the array
-    private String[] splitIntoTokens(String str) {
-        String[] tokens = new String[str.length() + 2];
-        int o = 0, i = 0;
-        int maxlen = str.length();
-
-        TOKEN: while (i < maxlen) {
-            char c = str.charAt(i);
-            Integer mlo = m_tokens_start.get(c);
-
-            // if there are multi-char tokens starting with this char, try them
-            if (mlo != null) {
-                for (int len = mlo.intValue(); len > 1; len--) {
-                    if (i <= maxlen - len) {
-                        String tr = str.substring(i, i + len);
-                        if (m_tokens.contains(tr)) {
-                            tokens[o++] = tr;
-                            i += len;
-                            continue TOKEN;
-                        }
-                    }
-                }
-            }
-
-            // things starting with backslash are special
-            if (c == '\\' && i <= maxlen - 2) {
-
-                if (str.charAt(i + 1) == 'u' && i <= maxlen - 6) {
-                    tokens[o++] = str.substring(i, i + 6); // \\uxxxx
-                    i += 6;
-
-                } else if (str.charAt(i + 1) == 'U' && i <= maxlen - 10) {
-                    tokens[o++] = str.substring(i, i + 10); // \\Uxxxxxxxx
-                    i += 10;
-
-                } else {
-                    tokens[o++] = str.substring(i, i + 2); // \\x
-                    i += 2;
-                }
-                continue TOKEN;
-            }
-
-            // otherwise just take one char
-            tokens[o++] = Character.toString(c);
-            i += 1;
-        }
+        return TibTables.tib_stack(s);
+    }
 
-        return tokens;
+    // the token text of a token kind, null for the kinds that are not in the
+    // automaton
+    private static final String name(int t) {
+        return EwtsTables.m_token_accept[t];
     }
 
     /**
@@ -1467,15 +333,23 @@ public class EwtsConverter {
      * @return normalized String
      */
     public static String normalizeSloppyWylie(String str) {
-        str = StringUtils.replaceEach(str, base, repl);
-        // lower case H and M smartly:
-        str = str.replaceAll("(^|[^aeiouAIU])H", "$1h");
-        str = str.replaceAll("(^|[^aeiouAIU~])M", "$1m");
-        // convert S but not Sh:
-        str = str.replace("Sh", "ZZZ");
-        str = str.replace("S", "s");
-        str = str.replace("ZZZ", "Sh");
-        return str;
+        return normalizeSloppyWylie(str, null);
+    }
+
+    // same, recording where each char of the result comes from in map, if any
+    private static String normalizeSloppyWylie(String str, OffsetMap map) {
+        final StringBuilder out = new StringBuilder(str.length() + 16);
+        new Normalizer().normalize(str, null, false, true, false, out, map);
+        return out.toString();
+    }
+
+    private static boolean isSloppyVowel(char c) {
+        switch (c) {
+        case 'a': case 'e': case 'i': case 'o': case 'u': case 'A': case 'I': case 'U':
+            return true;
+        default:
+            return false;
+        }
     }
     
     /**
@@ -1489,12 +363,363 @@ public class EwtsConverter {
      * @return normalized String
      */
     public static String normalizeForLenientSearch(String str) {
-        // lower case H and M to q and ! when they should be kept uppercase
-        str = str.replaceAll("([aeiouAIU])H", "$1q");
-        str = str.replaceAll("([aeiouAIU])M", "$1!");
-        str = str.toLowerCase();
-        str = StringUtils.replaceEach(str, baseL, replL);
-        return str;
+        return normalizeForLenientSearch(str, null);
+    }
+
+    // same, recording where each char of the result comes from in map, if any
+    private static String normalizeForLenientSearch(String str, OffsetMap map) {
+        final StringBuilder out = new StringBuilder(str.length() + 16);
+        new Normalizer().normalize(str, null, false, false, true, out, map);
+        return out.toString();
+    }
+
+    // The normalizations of toUnicode() (DTS or ALA-LC, removal of the initial
+    // spaces, sloppy, lenient) as the stages of a single pass over the text: each
+    // char goes through the stages that are on and the result is written to one
+    // buffer, without the intermediate strings. The DTS or ALA-LC replacer reads
+    // the text itself, the following ones keep the few chars they cannot decide
+    // on yet. Each char carries its offset in the text, for
+    // the OffsetMap. The result is the same as the normalizations one after the
+    // other. When lower casing cannot be done char by char (see
+    // Replacer.lowerCasesByChar()), the text is lower cased as a whole between
+    // the stages.
+    private static final class Normalizer {
+
+        // the chars waiting for a replacer to decide, in chars[head..tail), and
+        // their offsets; there are fewer of them than the length of the longest
+        // string of the replacer. The replacer reads them as a CharSequence.
+        private static final class Window implements CharSequence {
+            Replacer replacer;
+            char[] chars = new char[16];
+            int[] srcs = new int[16];
+            int head, tail;
+
+            void add(final char c, final int src) {
+                if (tail == chars.length) {
+                    final int w = tail - head;
+                    if (w * 2 > chars.length) {
+                        chars = Arrays.copyOf(chars, chars.length * 2);
+                        srcs = Arrays.copyOf(srcs, srcs.length * 2);
+                    }
+                    System.arraycopy(chars, head, chars, 0, w);
+                    System.arraycopy(srcs, head, srcs, 0, w);
+                    head = 0;
+                    tail = w;
+                }
+                chars[tail] = c;
+                srcs[tail++] = src;
+            }
+
+            // the string to replace at the head (then skip() it), -1 to pass the
+            // first char on (take() it), or Replacer.WAIT to wait for more chars (or
+            // if there are none)
+            int decide(final boolean more) {
+                if (head == tail) {
+                    head = tail = 0;
+                    return Replacer.WAIT;
+                }
+                return replacer.match(this, head, tail, more);
+            }
+
+            @Override
+            public int length() {
+                return tail;
+            }
+
+            @Override
+            public char charAt(final int i) {
+                return chars[i];
+            }
+
+            @Override
+            public CharSequence subSequence(final int start, final int end) {
+                return new String(chars, start, end - start);
+            }
+
+            int src() {
+                return srcs[head];
+            }
+
+            char take() {
+                return chars[head++];
+            }
+
+            void skip(final int k) {
+                head += replacer.fromLength(k);
+            }
+        }
+
+        // the text lower cased char by char, as read by the DTS or ALA-LC replacer
+        private final class Lower implements CharSequence {
+            CharSequence str;
+
+            @Override
+            public int length() {
+                return str.length();
+            }
+
+            @Override
+            public char charAt(final int i) {
+                final char c = str.charAt(i);
+                if (!Replacer.lowerCasesByChar(c))
+                    failed = true;
+                return Replacer.toLowerCase(c);
+            }
+
+            @Override
+            public CharSequence subSequence(final int start, final int end) {
+                final StringBuilder sb = new StringBuilder(end - start);
+                for (int i = start; i < end; i++)
+                    sb.append(charAt(i));
+                return sb.toString();
+            }
+
+            @Override
+            public String toString() {
+                return subSequence(0, length()).toString();
+            }
+        }
+
+        // the stages after DTS or ALA-LC, in their order
+        private static final int SLOPPY = 0, LENIENT = 1;
+
+        private final Lower lower = new Lower();
+        private final Window sloppy = new Window(), lenient = new Window();
+        private boolean doSloppy, doLenient;
+        // still removing the initial spaces
+        private boolean strip;
+        // the stages lower case the chars, or they are lower cased already
+        private boolean byChar;
+        // lower casing could not be done char by char
+        private boolean failed;
+        // the sloppy stage: the previous char after the replacements, was it an H or
+        // M that got lower cased, was it an S, and the last char produced (kept
+        // until the next one, that can change it)
+        private char prev, held;
+        private int heldSrc;
+        private boolean lowH, lowM, wasS, start;
+        // the lenient stage: the previous char
+        private char lenientPrev;
+        private StringBuilder out;
+        private OffsetMap map;
+
+        // normalizes str into out (empty), trans being the replacer of the DTS or
+        // ALA-LC conversion or null
+        void normalize(final CharSequence str, final Replacer trans, final boolean strip, final boolean sloppy,
+                final boolean lenient, final StringBuilder out, final OffsetMap map) {
+            if (Replacer.localeLowerCasesByChar() || (trans == null && !lenient)) {
+                if (pass(str, trans, true, strip, sloppy, lenient, out, map))
+                    return;
+                out.setLength(0);
+            }
+            // lower casing cannot be done char by char (see Replacer.lowerCasesByChar()):
+            // the stages that lower case get the text lower cased as a whole, like
+            // TransConverter.dtsToEwts() and normalizeForLenientSearch() would
+            final CharSequence text = trans != null ? Replacer.lowerCase(str.toString(), map) : str;
+            if (!lenient) {
+                pass(text, trans, false, strip, sloppy, false, out, map);
+                return;
+            }
+            final StringBuilder sb = new StringBuilder(text.length() + 16);
+            pass(text, trans, false, strip, sloppy, false, sb, map);
+            final boolean stripping = this.strip;
+            // H and M after a vowel turned into q and !, from the end so that the
+            // char before is not changed yet
+            for (int i = sb.length() - 1; i > 0; i--) {
+                final char c = sb.charAt(i);
+                if ((c == 'H' || c == 'M') && isSloppyVowel(sb.charAt(i - 1)))
+                    sb.setCharAt(i, c == 'H' ? 'q' : '!');
+            }
+            final String marked = sb.toString();
+            final String lowered = marked.toLowerCase();
+            if (map != null && lowered.length() != marked.length())
+                Replacer.mapLowerCase(marked, lowered.length(), map);
+            pass(lowered, null, false, false, false, true, out, map);
+            this.strip = stripping;
+        }
+
+        // one pass over str, with the lower casing done char by char by the stages
+        // (byChar) or already done; false if it could not be done char by char
+        private boolean pass(final CharSequence str, final Replacer trans, final boolean byChar, final boolean strip,
+                final boolean sloppy, final boolean lenient, final StringBuilder out, final OffsetMap map) {
+            this.doSloppy = sloppy;
+            if (sloppy) {
+                this.sloppy.replacer = SloppyReplacer.m_sloppy_repl;
+                this.prev = 0;
+                this.lowH = this.lowM = this.wasS = false;
+                this.start = true;
+            }
+            this.doLenient = lenient;
+            if (lenient) {
+                this.lenient.replacer = LenientReplacer.m_lenient_repl;
+                this.lenientPrev = 0;
+            }
+            this.byChar = byChar;
+            this.out = out;
+            this.map = map;
+            this.failed = false;
+
+            // the initial spaces are removed after the DTS or ALA-LC conversion, or
+            // directly from the input
+            final int len = str.length();
+            int i = 0;
+            this.strip = strip;
+            if (trans != null) {
+                // TransConverter.dtsToEwts() or alalcToEwts(): lower casing, then the
+                // replacements, directly on the text
+                final Lower lower = this.lower;
+                lower.str = str;
+                final CharSequence text = byChar ? lower : str;
+                while (i < len && !this.failed) {
+                    final int k = trans.match(text, i);
+                    if (k < 0) {
+                        sloppyIn(text.charAt(i), i);
+                        i++;
+                    } else {
+                        final String to = trans.to(k);
+                        for (int j = 0; j < to.length(); j++)
+                            sloppyIn(to.charAt(j), i);
+                        i += trans.fromLength(k);
+                    }
+                }
+                lower.str = null;
+            } else {
+                if (strip) {
+                    while (i < len && isRegexSpace(str.charAt(i)))
+                        i++;
+                    this.strip = i == len;
+                }
+                for (; i < len && !this.failed; i++)
+                    sloppyIn(str.charAt(i), i);
+            }
+            if (!this.failed) {
+                if (this.doSloppy) {
+                    drain(SLOPPY, this.sloppy, false);
+                    if (!this.start)
+                        lenientIn(this.held, this.heldSrc);
+                }
+                if (this.doLenient)
+                    drain(LENIENT, this.lenient, false);
+            }
+            // nothing to keep for the next call
+            this.sloppy.head = this.sloppy.tail = 0;
+            this.lenient.head = this.lenient.tail = 0;
+            this.out = null;
+            this.map = null;
+            if (this.failed)
+                return false;
+            if (map != null)
+                map.end(out.length(), len);
+            return true;
+        }
+
+        // still removing the initial spaces after the last call
+        boolean stripping() {
+            return strip;
+        }
+
+        // the removal of the initial spaces, then the sloppy normalization: its
+        // replacements, then the lower casing of H, M and S (the only
+        // implementation of normalizeSloppyWylie())
+        private void sloppyIn(final char c, final int src) {
+            if (strip) {
+                if (isRegexSpace(c))
+                    return;
+                strip = false;
+            }
+            if (doSloppy)
+                replace(SLOPPY, sloppy, c, src);
+            else
+                lenientIn(c, src);
+        }
+
+        private void sloppyOut(final char c, final int src) {
+            char o = c;
+            boolean h = false, m = false;
+            if (c == 'H' && (start || (!lowH && !isSloppyVowel(prev)))) {
+                o = 'h';
+                h = true;
+            } else if (c == 'M' && (start || (!lowM && prev != '~' && !isSloppyVowel(prev)))) {
+                o = 'm';
+                m = true;
+            } else if (c == 'S') {
+                o = 's';
+            }
+            // convert S but not Sh:
+            if (o == 'h' && wasS)
+                held = 'S';
+            if (!start)
+                lenientIn(held, heldSrc);
+            held = o;
+            heldSrc = src;
+            start = false;
+            prev = c;
+            lowH = h;
+            lowM = m;
+            wasS = c == 'S';
+        }
+
+        // normalizeForLenientSearch(): H and M after a vowel turned into q and !,
+        // lower casing (unless it is done already), then the replacements
+        private void lenientIn(final char c, final int src) {
+            if (!doLenient) {
+                sink(c, src);
+                return;
+            }
+            if (!byChar) {
+                replace(LENIENT, lenient, c, src);
+                return;
+            }
+            char m = c;
+            if ((c == 'H' || c == 'M') && isSloppyVowel(lenientPrev))
+                m = c == 'H' ? 'q' : '!';
+            lenientPrev = c;
+            if (!Replacer.lowerCasesByChar(m)) {
+                failed = true;
+                return;
+            }
+            replace(LENIENT, lenient, Replacer.toLowerCase(m), src);
+        }
+
+        private void sink(final char c, final int src) {
+            if (map != null)
+                map.set(out.length(), src);
+            out.append(c);
+        }
+
+        // a char through the replacer of a stage
+        private void replace(final int stage, final Window w, final char c, final int src) {
+            // most chars start no string of the replacer
+            if (w.head == w.tail && !w.replacer.starts(c)) {
+                emit(stage, c, src);
+                return;
+            }
+            w.add(c, src);
+            drain(stage, w, true);
+        }
+
+        private void drain(final int stage, final Window w, final boolean more) {
+            int k;
+            while ((k = w.decide(more)) != Replacer.WAIT) {
+                final int src = w.src();
+                if (k < 0) {
+                    emit(stage, w.take(), src);
+                } else {
+                    final String to = w.replacer.to(k);
+                    for (int j = 0; j < to.length(); j++)
+                        emit(stage, to.charAt(j), src);
+                    w.skip(k);
+                }
+            }
+        }
+
+        // a char produced by the replacer of a stage, to the next stage
+        private void emit(final int stage, final char c, final int src) {
+            if (stage == SLOPPY)
+                sloppyOut(c, src);
+            else
+                sink(c, src);
+        }
     }
 
     /**
@@ -1535,74 +760,858 @@ public class EwtsConverter {
     public String toUnicode(final String str, final List<String> warns, final boolean sloppy) {
         return toUnicode(str, warns, sloppy, false);
     }
-    
+
+    /**
+     * Converts a string to Unicode, optionally normalizing it for lenient search
+     * first.
+     * 
+     * @param str
+     *            the string to convert
+     * @param warns
+     *            the warning list to fill, or null
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @return the converted string
+     */
     public String toUnicode(String str, final List<String> warns, final boolean sloppy, final boolean lenient) {
+        return toUnicodeString(str, sink(warns), sloppy, lenient, null);
+    }
+
+    /**
+     * Converts a string to Unicode, with structured warnings.
+     * 
+     * @param str
+     *            the string to convert
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @param warnings
+     *            the warning list to fill, or null
+     * @return the converted string
+     */
+    public String toUnicode(final String str, final boolean sloppy, final boolean lenient,
+            final List<Warning> warnings) {
+        return toUnicodeString(str, structuredSink(warnings), sloppy, lenient, null);
+    }
+
+    /**
+     * Converts a string to Unicode, with structured warnings, recording the
+     * offsets of its tsekbars and other units in the string and in the result.
+     * The offsets in the string are those before the sloppy and lenient
+     * normalizations.
+     * 
+     * @param str
+     *            the string to convert
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @param warnings
+     *            the warning list to fill, or null
+     * @param offsets
+     *            the map to fill, cleared first
+     * @return the converted string
+     */
+    public String toUnicode(final String str, final boolean sloppy, final boolean lenient,
+            final List<Warning> warnings, final OffsetMap offsets) {
+        return toUnicodeString(str, structuredSink(warnings), sloppy, lenient, offsets);
+    }
+
+    /**
+     * Converts a text to Unicode into an Appendable, with structured warnings.
+     * The text is not copied unless it has to be normalized (sloppy, lenient, or
+     * the DTS and ALA-LC modes), and the conversion writes to a StringBuilder
+     * directly. With a TsekbarCache and reused buffers, converting text that is
+     * already in the cache allocates nothing.
+     * 
+     * @param str
+     *            the text to convert
+     * @param out
+     *            where to append the converted text
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @param warnings
+     *            the warning list to fill, or null
+     * @return the number of chars appended to out
+     * @throws IOException
+     *             if out throws one
+     */
+    public int toUnicode(final CharSequence str, final Appendable out, final boolean sloppy, final boolean lenient,
+            final List<Warning> warnings) throws IOException {
+        final Scratch s = Scratch.acquire();
+        try {
+            return toUnicodeInto(str, s.output.to(out), structuredSink(warnings), sloppy, lenient, null, s);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            s.release();
+        }
+    }
+
+    /**
+     * Converts a part of a char[] to Unicode into a char[], with structured
+     * warnings, see toUnicode(CharSequence, Appendable, boolean, boolean, List).
+     * 
+     * @param str
+     *            the chars of the text to convert
+     * @param offset
+     *            the offset of the text in str
+     * @param length
+     *            the length of the text
+     * @param out
+     *            where to write the converted text
+     * @param outOffset
+     *            the offset in out of the converted text
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @param warnings
+     *            the warning list to fill, or null
+     * @return the number of chars written to out
+     * @throws java.nio.BufferOverflowException
+     *             if the converted text does not fit in out, whose content after
+     *             outOffset is then undefined
+     */
+    public int toUnicode(final char[] str, final int offset, final int length, final char[] out, final int outOffset,
+            final boolean sloppy, final boolean lenient, final List<Warning> warnings) {
+        return toUnicode(str, offset, length, out, outOffset, sloppy, lenient, warnings, null);
+    }
+
+    /**
+     * Same as toUnicode(char[], int, int, char[], int, boolean, boolean, List),
+     * recording the offsets of the units of the text in an OffsetMap, relative
+     * to offset in str and to outOffset in out. Reusing the map, the recording
+     * allocates nothing once it is large enough.
+     * 
+     * @param str
+     *            the chars of the text to convert
+     * @param offset
+     *            the offset of the text in str
+     * @param length
+     *            the length of the text
+     * @param out
+     *            where to write the converted text
+     * @param outOffset
+     *            the offset in out of the converted text
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @param warnings
+     *            the warning list to fill, or null
+     * @param offsets
+     *            the map to fill (cleared first), or null
+     * @return the number of chars written to out
+     * @throws java.nio.BufferOverflowException
+     *             if the converted text does not fit in out
+     */
+    public int toUnicode(final char[] str, final int offset, final int length, final char[] out, final int outOffset,
+            final boolean sloppy, final boolean lenient, final List<Warning> warnings, final OffsetMap offsets) {
+        checkRange(str, offset, length, out, outOffset);
+        final Scratch s = Scratch.acquire();
+        try {
+            return toUnicodeInto(s.chars.of(str, offset, length), s.output.to(out, outOffset),
+                    structuredSink(warnings), sloppy, lenient, offsets, s);
+        } finally {
+            s.release();
+        }
+    }
+
+    /**
+     * Converts a part of a byte[] of UTF-8 text to Unicode, written in UTF-8 into
+     * a byte[], with structured warnings. The result is the same as with
+     * <code>toUnicode(new String(str, offset, length, UTF_8), sloppy, lenient, warnings).getBytes(UTF_8)</code>,
+     * but the text is decoded into a buffer of the thread and the result is
+     * encoded as it is converted, without any string. The offsets of the
+     * warnings are in chars, as in the decoded string.
+     * 
+     * @param str
+     *            the bytes of the text to convert
+     * @param offset
+     *            the offset of the text in str
+     * @param length
+     *            the length of the text, in bytes
+     * @param out
+     *            where to write the converted text
+     * @param outOffset
+     *            the offset in out of the converted text
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @param warnings
+     *            the warning list to fill, or null
+     * @return the number of bytes written to out
+     * @throws java.nio.BufferOverflowException
+     *             if the converted text does not fit in out, whose content after
+     *             outOffset is then undefined
+     */
+    public int toUnicode(final byte[] str, final int offset, final int length, final byte[] out, final int outOffset,
+            final boolean sloppy, final boolean lenient, final List<Warning> warnings) {
+        checkRange(str.length, offset, length, out.length, outOffset);
+        final Scratch s = Scratch.acquire();
+        try {
+            final Output o = s.output.toUtf8(out, outOffset, out.length);
+            toUnicodeInto(s.decode(str, offset, length), o, structuredSink(warnings), sloppy, lenient, null, s);
+            o.flush();
+            return o.length();
+        } finally {
+            s.release();
+        }
+    }
+
+    /**
+     * Converts the remaining bytes of a buffer of UTF-8 text to Unicode, written
+     * in UTF-8 to the remaining bytes of another buffer, see toUnicode(byte[],
+     * int, int, byte[], int, boolean, boolean, List). The position of str moves
+     * to its limit and the position of out after the converted text.
+     * 
+     * @param str
+     *            the text to convert
+     * @param out
+     *            where to write the converted text
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @param warnings
+     *            the warning list to fill, or null
+     * @return the number of bytes written to out
+     * @throws java.nio.BufferOverflowException
+     *             if the converted text does not fit in out, the positions of
+     *             the buffers then do not change
+     */
+    public int toUnicode(final ByteBuffer str, final ByteBuffer out, final boolean sloppy, final boolean lenient,
+            final List<Warning> warnings) {
+        final Scratch s = Scratch.acquire();
+        try {
+            final CharSequence text = s.decode(str);
+            toUnicodeInto(text, s.encode(out), structuredSink(warnings), sloppy, lenient, null, s);
+            return s.written(str, out);
+        } finally {
+            s.release();
+        }
+    }
+
+    private int toUnicodeInto(final CharSequence str, final Output out, final WarningSink warns, final boolean sloppy,
+            final boolean lenient, final OffsetMap offsets, final Scratch s) {
+        s.state.reset();
+        if (offsets != null)
+            offsets.clear();
+        s.state.offsets = offsets;
+        final CharSequence norm = toUnicodeNormalize(str, sloppy, lenient, s.state, s.normalizer, s.normalized);
+        s.tokens.reset(norm);
+        toUnicodeChunk(norm, s.tokens, out, warns, s.state);
+        toUnicodeEnd(warns, s.state);
+        return out.length();
+    }
+
+    private static void checkRange(final char[] str, final int offset, final int length, final char[] out,
+            final int outOffset) {
+        checkRange(str.length, offset, length, out.length, outOffset);
+    }
+
+    private static void checkRange(final int size, final int offset, final int length, final int outSize,
+            final int outOffset) {
+        if (offset < 0 || length < 0 || offset > size - length)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + size);
+        if (outOffset < 0 || outOffset > outSize)
+            throw new IndexOutOfBoundsException("outOffset " + outOffset + ", size " + outSize);
+    }
+
+    private String toUnicodeString(final String str, final WarningSink warns, final boolean sloppy,
+            final boolean lenient, final OffsetMap offsets) {
+        if (str == null) {
+            return null;
+        }
+
+        final StringBuilder out = new StringBuilder();
+        final Scratch s = Scratch.acquire();
+        try {
+            toUnicodeInto(str, s.output.to(out), warns, sloppy, lenient, offsets, s);
+        } finally {
+            s.release();
+        }
+        return out.toString();
+    }
+
+    /**
+     * Converts a stream to Unicode, chunk by chunk, with the same output and
+     * warnings as converting the whole text at once. Chunks end at newlines or
+     * between tsekbars, so memory use does not depend on the size of the input
+     * (unless it has very long lines made of something else than tsekbars).
+     * 
+     * @param in
+     *            the stream to convert
+     * @param out
+     *            where to write the converted text
+     * @param warns
+     *            the warning list to fill
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @throws IOException
+     *             if reading or writing fails
+     */
+    public void toUnicode(final Reader in, final Appendable out, final List<String> warns, final boolean sloppy,
+            final boolean lenient) throws IOException {
+        toUnicode(in, out, warns, sloppy, lenient, STREAM_BUFFER_SIZE);
+    }
+
+    void toUnicode(final Reader in, final Appendable out, final List<String> warns, final boolean sloppy,
+            final boolean lenient, final int bufferSize) throws IOException {
+        toUnicode(in, out, sink(warns), sloppy, lenient, bufferSize);
+    }
+
+    // same with the warnings going to sink, null if nobody listens to them
+    void toUnicode(final Reader in, final Appendable out, final WarningSink sink, final boolean sloppy,
+            final boolean lenient, final int bufferSize) throws IOException {
+        final ChunkReader chunks = new ChunkReader(in, bufferSize, false);
+        final ToUnicodeState state = new ToUnicodeState();
+        final Output output = new Output().to(out);
+        final Normalizer normalizer = new Normalizer();
+        final StringBuilder normalized = new StringBuilder();
+        String chunk;
+        while ((chunk = chunks.next()) != null) {
+            final boolean strip = state.strip;
+            String str = toUnicodeNormalize(chunk, sloppy, lenient, state, normalizer, normalized).toString();
+
+            // the normalizations can bring a backslash close to the end of the chunk, it
+            // could then start an escape that ends in the next chunk
+            String more;
+            while (str.lastIndexOf('\\') >= str.length() - 9 && str.lastIndexOf('\\') >= 0
+                    && (more = chunks.next()) != null) {
+                chunk = chunk + more;
+                state.strip = strip;
+                str = toUnicodeNormalize(chunk, sloppy, lenient, state, normalizer, normalized).toString();
+            }
+
+            try {
+                toUnicodeChunk(str, new TokenStream(str), output, sink, state);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        toUnicodeEnd(sink, state);
+    }
+
+    /**
+     * Converts a string to Unicode, converting parts of it in parallel on the
+     * common fork/join pool, with the same output and warnings as
+     * toUnicode(str, warns, sloppy, lenient). The string is cut at the same places
+     * as in the stream conversion, so this is only faster for long texts.
+     * 
+     * @param str
+     *            the string to convert
+     * @param warns
+     *            the warning list to fill
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @return the converted string
+     */
+    public String toUnicodeParallel(final String str, final List<String> warns, final boolean sloppy,
+            final boolean lenient) {
+        return toUnicodeParallel(str, warns, sloppy, lenient, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts a string to Unicode, converting parts of it in parallel on a
+     * fork/join pool, with the same output and warnings as
+     * toUnicode(str, warns, sloppy, lenient).
+     * 
+     * @param str
+     *            the string to convert
+     * @param warns
+     *            the warning list to fill
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @param pool
+     *            the pool to convert on
+     * @return the converted string
+     */
+    public String toUnicodeParallel(final String str, final List<String> warns, final boolean sloppy,
+            final boolean lenient, final ForkJoinPool pool) {
         if (str == null) {
             return null;
         }
+        return toUnicodeParallel(str, warns, sloppy, lenient, pool, parallelChunkSize(str, pool));
+    }
+
+    String toUnicodeParallel(final String str, final List<String> warns, final boolean sloppy,
+            final boolean lenient, final ForkJoinPool pool, final int chunkSize) {
+        final List<String> chunks = split(str, chunkSize, false);
+        // the warnings of the chunks are kept aside and passed on in order below
+        final WarningSink sink = sink(warns);
+        final boolean keep_warns = sink != null;
+
+        // each chunk but the first is converted assuming that the previous one
+        // ended outside of [comments] and, if it ended with a newline, that the
+        // spaces after it have to be eaten
+        final List<ForkJoinTask<ParallelChunk>> tasks = new ArrayList<ForkJoinTask<ParallelChunk>>(chunks.size());
+        for (int k = 0; k < chunks.size(); k++) {
+            final String chunk = chunks.get(k);
+            final ToUnicodeState start = new ToUnicodeState();
+            if (k > 0) {
+                // initial spaces are only stripped with fix_spacing
+                start.strip = !this.fix_spacing;
+                start.eat_spaces = this.fix_spacing && chunks.get(k - 1).endsWith("\n");
+            }
+            tasks.add(pool.submit(() -> toUnicodeParallelChunk(chunk, start, sloppy, lenient, keep_warns)));
+        }
+
+        // join the chunks in order, converting again the ones that did not start
+        // in the assumed state
+        final ToUnicodeState state = new ToUnicodeState();
+        final StringBuilder out = new StringBuilder(str.length());
+        for (int k = 0; k < chunks.size(); k++) {
+            ParallelChunk c = tasks.get(k).join();
+            if (c.start.nesting != state.nesting || c.start.strip != state.strip
+                    || c.start.eat_spaces != state.eat_spaces)
+                c = toUnicodeParallelChunk(c.raw, state, sloppy, lenient, keep_warns);
+
+            // an escape can span the end of the chunk, see toUnicode(Reader, ...)
+            while (c.open_escape && k + 1 < chunks.size()) {
+                k++;
+                tasks.get(k).cancel(false);
+                c = toUnicodeParallelChunk(c.raw + chunks.get(k), state, sloppy, lenient, keep_warns);
+            }
+
+            out.append(c.out);
+            final int lines = state.line - c.start.line;
+            final int chars = state.offset - c.start.offset;
+            if (c.warns != null) {
+                for (final Warning w : c.warns)
+                    sink.add(w.shift(lines, chars));
+            }
+            state.line = c.end.line + lines;
+            state.offset = c.end.offset + chars;
+            state.units += c.end.units - c.start.units;
+            state.nesting = c.end.nesting;
+            state.strip = c.end.strip;
+            state.eat_spaces = c.end.eat_spaces;
+            if (state.first < 0)
+                state.first = c.end.first;
+        }
+        toUnicodeEnd(sink, state);
+        return out.toString();
+    }
+
+    // a chunk converted by toUnicodeParallel(), from the state it was assumed to
+    // start in
+    private static final class ParallelChunk {
+        final String raw;
+        final ToUnicodeState start;
+        ToUnicodeState end;
+        String out;
+        List<Warning> warns;
+        // the normalized chunk has a backslash close to its end
+        boolean open_escape;
+
+        ParallelChunk(String raw, ToUnicodeState start) {
+            this.raw = raw;
+            this.start = start;
+        }
+    }
+
+    private ParallelChunk toUnicodeParallelChunk(final String raw, final ToUnicodeState start, final boolean sloppy,
+            final boolean lenient, final boolean keep_warns) {
+        final ParallelChunk res = new ParallelChunk(raw, new ToUnicodeState(start));
+        final ToUnicodeState state = new ToUnicodeState(start);
+        final String str = toUnicodeNormalize(raw, sloppy, lenient, state, new Normalizer(), new StringBuilder())
+                .toString();
+        final int backslash = str.lastIndexOf('\\');
+        res.open_escape = backslash >= 0 && backslash >= str.length() - 9;
+        final StringBuilder sb = new StringBuilder(str.length());
+        res.warns = keep_warns ? new ArrayList<Warning>() : null;
+        toUnicodeChunk(str, sb, keep_warns ? new WarningSink(res.warns, null, false) : null, state);
+        res.out = sb.toString();
+        res.end = state;
+        return res;
+    }
+
+    // cuts a string at the places where ChunkReader would, in chunks of about
+    // chunkSize chars
+    private List<String> split(final String str, final int chunkSize, final boolean unicode) {
+        final List<String> res = new ArrayList<String>();
+        final ChunkReader chunks = new ChunkReader(new StringReader(str), chunkSize, unicode);
+        try {
+            String chunk;
+            while ((chunk = chunks.next()) != null)
+                res.add(chunk);
+        } catch (IOException e) {
+            // cannot happen with a StringReader
+            throw new UncheckedIOException(e);
+        }
+        return res;
+    }
+
+    // a few chunks per thread of the pool, so that they balance, but not too
+    // small ones
+    private static int parallelChunkSize(final String str, final ForkJoinPool pool) {
+        return Math.max(PARALLEL_CHUNK_SIZE, str.length() / (4 * pool.getParallelism()));
+    }
+
+    /**
+     * Converts many strings to Unicode, with the same results as calling
+     * toUnicode(str, warns, sloppy, lenient) on each of them, but reusing the
+     * same buffers from one string to the next. This is much faster for short
+     * strings like titles or names, especially when the converter has a
+     * TsekbarCache.
+     * 
+     * @param strs
+     *            the strings to convert (null strings are converted to null)
+     * @param warns
+     *            the list to fill with one list of warnings per string (an empty
+     *            immutable list for strings without warnings), or null
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @return the converted strings, in the same order
+     */
+    public List<String> toUnicodeBatch(final List<String> strs, final List<List<String>> warns,
+            final boolean sloppy, final boolean lenient) {
+        return toUnicodeBatch(strs, warns, sloppy, lenient, null);
+    }
+
+    /**
+     * Converts many strings to Unicode, like toUnicodeBatch(strs, warns, sloppy,
+     * lenient), spreading large batches over a fork/join pool.
+     * 
+     * @param strs
+     *            the strings to convert (null strings are converted to null)
+     * @param warns
+     *            the list to fill with one list of warnings per string (an empty
+     *            immutable list for strings without warnings), or null
+     * @param sloppy
+     *            if common EWTS errors should be fixed
+     * @param lenient
+     *            if the text should be normalized for lenient search
+     * @param pool
+     *            the pool to convert on, or null to convert in the calling thread
+     * @return the converted strings, in the same order
+     */
+    public List<String> toUnicodeBatch(final List<String> strs, final List<List<String>> warns,
+            final boolean sloppy, final boolean lenient, final ForkJoinPool pool) {
+        final String[] in = strs.toArray(new String[strs.size()]);
+        final String[] res = new String[in.length];
+        // the warnings are formatted and printed below, in order
+        final List<List<Warning>> item_warns = warns != null || this.print_warnings
+                ? new ArrayList<List<Warning>>(Collections.<List<Warning>>nCopies(in.length, null))
+                : null;
+        if (pool == null || in.length < 2 * BATCH_SLICE) {
+            toUnicodeBatch(in, 0, in.length, res, item_warns, sloppy, lenient);
+        } else {
+            final List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+            for (int from = 0; from < in.length; from += BATCH_SLICE) {
+                final int start = from;
+                final int end = Math.min(in.length, from + BATCH_SLICE);
+                tasks.add(pool.submit(() -> toUnicodeBatch(in, start, end, res, item_warns, sloppy, lenient)));
+            }
+            for (final ForkJoinTask<?> task : tasks)
+                task.join();
+        }
 
+        if (item_warns != null) {
+            for (final List<Warning> w : item_warns) {
+                if (w.isEmpty()) {
+                    if (warns != null)
+                        warns.add(Collections.<String>emptyList());
+                    continue;
+                }
+                final List<String> formatted = warns != null ? new ArrayList<String>(w.size()) : null;
+                final WarningSink sink = new WarningSink(null, formatted, this.print_warnings);
+                for (final Warning warning : w)
+                    sink.add(warning);
+                if (warns != null)
+                    warns.add(formatted);
+            }
+        }
+        return Arrays.asList(res);
+    }
+
+    // converts in[from, to) to res[from, to), with one set of buffers
+    private void toUnicodeBatch(final String[] in, final int from, final int to, final String[] res,
+            final List<List<Warning>> warns, final boolean sloppy, final boolean lenient) {
+        final TokenStream tokens = new TokenStream("");
         final StringBuilder out = new StringBuilder();
+        final Output output = new Output();
+        final ToUnicodeState state = new ToUnicodeState();
+        final Normalizer normalizer = new Normalizer();
+        final StringBuilder normalized = new StringBuilder();
+        final List<Warning> item_warns = warns != null ? new ArrayList<Warning>() : null;
+        final WarningSink sink = warns != null ? new WarningSink(item_warns, null, false) : null;
+        for (int k = from; k < to; k++) {
+            if (in[k] == null) {
+                if (warns != null)
+                    warns.set(k, Collections.<Warning>emptyList());
+                continue;
+            }
+            out.setLength(0);
+            state.reset();
+            if (item_warns != null)
+                item_warns.clear();
+            final CharSequence str = toUnicodeNormalize(in[k], sloppy, lenient, state, normalizer, normalized);
+            tokens.reset(str);
+            toUnicodeChunk(str, tokens, output.to(out), sink, state);
+            toUnicodeEnd(sink, state);
+            res[k] = out.toString();
+            if (warns != null)
+                warns.set(k, item_warns.isEmpty() ? Collections.<Warning>emptyList() : new ArrayList<Warning>(item_warns));
+        }
+    }
+
+    /**
+     * Checks the syllables of a string with the checks of this converter, without
+     * converting it.
+     * 
+     * @param str
+     *            the string to check
+     * @return which syllables have warnings
+     */
+    public Validation validate(final String str) {
+        return validate(str, false, false, false, null);
+    }
+
+    /**
+     * Checks the syllables (tsekbars) of a string with the checks of this
+     * converter (prefixes, superscripts, subscripts, suffixes, second suffixes and
+     * ambiguous roots), with the same warnings as toUnicode() but without building
+     * its output. Only the syllables are checked, the rest of the text (unexpected
+     * characters, unfinished [comments], etc.) is skipped.
+     * 
+     * @param str
+     *            the string to check
+     * @param sloppy
+     *            if common EWTS errors should be fixed first
+     * @param lenient
+     *            if the text should be normalized for lenient search first
+     * @param stop_at_first
+     *            if the check should stop at the first syllable with warnings
+     * @param warnings
+     *            the warning list to fill, or null
+     * @return which syllables have warnings
+     */
+    public Validation validate(final String str, final boolean sloppy, final boolean lenient,
+            final boolean stop_at_first, final List<Warning> warnings) {
+        final Scratch s = Scratch.acquire();
+        try {
+            s.state.reset();
+            s.state.offsets = null;
+            final CharSequence norm = toUnicodeNormalize(str, sloppy, lenient, s.state, s.normalizer, s.normalized);
+            s.tokens.reset(norm);
+            return validateNormalized(norm, s.tokens, stop_at_first, structuredSink(warnings));
+        } finally {
+            s.release();
+        }
+    }
+
+    private Validation validateNormalized(final CharSequence norm, final TokenStream tokens,
+            final boolean stop_at_first, final WarningSink sink) {
+        final StringBuilder scratch = new StringBuilder();
+        final BitSet invalid = new BitSet();
+        int syllables = 0;
+        int line = 1;
+        int nesting = 0;
+        int i = 0;
+        int t;
+        while ((t = tokens.kind(i)) != TOK_END) {
+            tokens.mark(i);
+
+            // [non-tibetan text], without counting its lines like toUnicode()
+            if (t == TOK_LBRACKET || nesting > 0) {
+                if (t == TOK_LBRACKET)
+                    nesting++;
+                if (t == TOK_RBRACKET)
+                    nesting--;
+                i++;
+                continue;
+            }
+
+            if (other(t) == null && (vowel(t) != null || consonant(t) != null)) {
+                final WylieTsekbar tb;
+                if (this.cache != null) {
+                    tb = toUnicodeOneTsekbarCached(tokens, i, true);
+                } else {
+                    scratch.setLength(0);
+                    tb = toUnicodeOneTsekbar(tokens, i, true, scratch);
+                }
+                if (tb.warns != null) {
+                    invalid.set(syllables);
+                    if (sink != null) {
+                        final int start = tokens.start(i), end = tokens.start(i + tb.tokens_used);
+                        final String word = norm.subSequence(start, end).toString();
+                        for (final Warning w : tb.warns)
+                            sink.add(w.at(line, word, start, end));
+                    }
+                }
+                syllables++;
+                i += tb.tokens_used;
+                if (tb.warns != null && stop_at_first)
+                    return new Validation(syllables, invalid, false);
+                continue;
+            }
+
+            if (t == EwtsTables.m_tok_crlf || t == TOK_NL || t == TOK_CR)
+                line++;
+            i++;
+        }
+        return new Validation(syllables, invalid, true);
+    }
+
+    // what toUnicode() needs to know about the previous chunks of its input
+    private static final class ToUnicodeState {
         int line = 1;
+        // number of tsekbars and punctuation signs converted
         int units = 0;
+        // nesting of [non-tibetan text] at the end of the previous chunk
+        int nesting = 0;
+        // still removing initial spaces, or spaces after a newline
+        boolean strip = true;
+        boolean eat_spaces = false;
+        // first char of the output, -1 if there is none yet
+        int first = -1;
+        // length of the previous normalized chunks, for the positions of warnings
+        int offset = 0;
+        // where to record the offsets of the units, or null (whole texts only)
+        OffsetMap offsets = null;
+
+        ToUnicodeState() {
+        }
 
-        if (this.mode == Mode.DWTS || this.mode == Mode.DTS) {
-            str = TransConverter.dtsToEwts(str);
-        } else if (this.mode == Mode.ALALC) {
-            str = TransConverter.alalcToEwts(str);
+        // back to the state at the start of a text
+        void reset() {
+            this.line = 1;
+            this.units = 0;
+            this.nesting = 0;
+            this.strip = true;
+            this.eat_spaces = false;
+            this.first = -1;
+            this.offset = 0;
+            this.offsets = null;
         }
 
-        // remove initial spaces if required
-        if (this.fix_spacing) {
-            str = str.replaceFirst("^\\s+", "");
+        ToUnicodeState(ToUnicodeState other) {
+            this.line = other.line;
+            this.units = other.units;
+            this.nesting = other.nesting;
+            this.strip = other.strip;
+            this.eat_spaces = other.eat_spaces;
+            this.first = other.first;
+            this.offset = other.offset;
         }
+    }
 
-        if (sloppy)
-            str = normalizeSloppyWylie(str);
-        if (lenient)
-            str = normalizeForLenientSearch(str);
+    // the normalizations done by toUnicode() before tokenizing, on a chunk of a
+    // text, in a single pass into out (see Normalizer). The text is only copied if
+    // it has to be normalized.
+    private CharSequence toUnicodeNormalize(CharSequence str, final boolean sloppy, final boolean lenient,
+            final ToUnicodeState state, final Normalizer normalizer, final StringBuilder out) {
+        final Replacer trans = this.mode == Mode.DWTS || this.mode == Mode.DTS ? TransConverter.dtsToEwtsReplacer()
+                : this.mode == Mode.ALALC ? TransConverter.alalcToEwtsReplacer() : null;
+        if (trans != null || sloppy || lenient) {
+            final boolean strip = this.fix_spacing && state.strip;
+            out.setLength(0);
+            normalizer.normalize(str, trans, strip, sloppy, lenient, out, state.offsets);
+            if (strip)
+                state.strip = normalizer.stripping();
+            return out.toString();
+        }
+        if (this.fix_spacing && state.strip) {
+            int k = 0;
+            while (k < str.length() && isRegexSpace(str.charAt(k)))
+                k++;
+            if (state.offsets != null && k > 0)
+                state.offsets.drop(k, str.length());
+            if (k > 0)
+                str = str.subSequence(k, str.length());
+            state.strip = str.length() == 0;
+        }
+        return str;
+    }
 
-        // split into tokens
-        final String[] tokens = splitIntoTokens(str);
+    // converts the normalized chunk of a text to Unicode
+    private void toUnicodeChunk(final String str, final StringBuilder out, final WarningSink warns,
+            final ToUnicodeState state) {
+        toUnicodeChunk(str, new TokenStream(str), new Output().to(out), warns, state);
+    }
+
+    // same with the tokens of str
+    private void toUnicodeChunk(final CharSequence str, final TokenStream tokens, final Output out,
+            final WarningSink warns, final ToUnicodeState state) {
+        final int base = state.offset;
+        final OffsetMap offsets = state.offsets;
+        int line = state.line;
+        int units = state.units;
         int i = 0;
 
+        // spaces after a newline that ended the previous chunk
+        if (state.eat_spaces) {
+            while (tokens.kind(i) == TOK_SPACE)
+                i++;
+            state.eat_spaces = tokens.kind(i) == TOK_END;
+        }
+
         // iterate over the tokens
-        ITER: while (tokens[i] != null) {
-            String t = tokens[i];
+        ITER: while (true) {
+            int t = tokens.kind(i);
+            if (t == TOK_END)
+                break ITER;
+            tokens.mark(i);
+            if (offsets != null)
+                offsets.add(offsets.source(tokens.start(i)), out.length());
             String o;
 
-            // [non-tibetan text] : pass through, nesting brackets
-            if (t.equals("[")) {
+            // [non-tibetan text] : pass through, nesting brackets (the text may start in
+            // the previous chunk)
+            if (t == TOK_LBRACKET || state.nesting > 0) {
 
-                int nesting = 1;
-                i++;
-                ESC: while (tokens[i] != null) {
-                    t = tokens[i++];
-                    if (t.equals("["))
-                        nesting++;
-                    if (t.equals("]"))
-                        nesting--;
-                    if (nesting == 0)
+                if (state.nesting == 0) {
+                    state.nesting = 1;
+                    i++;
+                }
+                ESC: while ((t = tokens.kind(i)) != TOK_END) {
+                    tokens.mark(i);
+                    if (offsets != null)
+                        offsets.add(offsets.source(tokens.start(i)), out.length());
+                    if (t == TOK_LBRACKET)
+                        state.nesting++;
+                    if (t == TOK_RBRACKET)
+                        state.nesting--;
+                    if (state.nesting == 0) {
+                        i++;
                         continue ITER;
-
-                    // handle unicode escapes and \1-char escapes within [comments]...
-                    if (t.startsWith("\\u") || t.startsWith("\\U")) {
-                        o = unicodeEscape(warns, line, t);
-                        if (o != null) {
-                            out.append(o);
-                            continue ESC;
-                        }
                     }
 
-                    if (t.startsWith("\\")) {
-                        o = t.substring(1);
+                    // the text up to the next bracket or escape is passed through as a
+                    // whole (with an OffsetMap, token by token as the rest)
+                    if (offsets == null && t != EwtsTables.m_tok_uescape && t != EwtsTables.m_tok_escape)
+                        t = tokens.run(i);
+
+                    // handle unicode escapes and \1-char escapes within [comments]...
+                    if (t == EwtsTables.m_tok_uescape) {
+                        out.append(unicodeEscape(warns, line, tokens.text(i), base + tokens.start(i)));
+                    } else if (t == EwtsTables.m_tok_escape || t == EwtsTables.m_tok_char) {
+                        final int start = tokens.start(i);
+                        out.append(str, t == EwtsTables.m_tok_escape ? start + 1 : start, tokens.start(i + 1));
                     } else {
-                        o = t;
+                        out.append(name(t));
                     }
-
-                    out.append(o);
+                    i++;
                 }
 
-                warnl(warns, line, "Unfinished [non-Converter stuff].");
+                // unfinished, warned about in toUnicodeEnd()
                 break ITER;
             }
 
@@ -1614,8 +1623,8 @@ public class EwtsConverter {
                 units++;
 
                 // collapse multiple spaces?
-                if (t.equals(" ") && this.fix_spacing) {
-                    while (tokens[i] != null && tokens[i].equals(" "))
+                if (t == TOK_SPACE && this.fix_spacing) {
+                    while (tokens.kind(i) == TOK_SPACE)
                         i++;
                 }
 
@@ -1625,57 +1634,63 @@ public class EwtsConverter {
             // vowels & consonants: process tibetan script up to a tsek, punctuation or line
             // noise
             if (vowel(t) != null || consonant(t) != null) {
-                WylieTsekbar tb = toUnicodeOneTsekbar(tokens, i);
-                StringBuilder word = new StringBuilder();
-                for (int j = 0; j < tb.tokens_used; j++) {
-                    word.append(tokens[i + j]);
-                }
+                WylieTsekbar tb = toUnicodeOneTsekbarCached(tokens, i, warns != null);
                 out.append(tb.uni_string);
+                if (tb.warns != null && warns != null) {
+                    final int start = tokens.start(i), end = tokens.start(i + tb.tokens_used);
+                    final String word = str.subSequence(start, end).toString();
+                    for (final Warning w : tb.warns) {
+                        warns.add(w.at(line, word, base + start, base + end));
+                    }
+                }
                 i += tb.tokens_used;
                 units++;
 
-                for (final String w : tb.warns) {
-                    warnl(warns, line, "\"" + word.toString() + "\": " + w);
-                }
-
                 continue ITER;
             }
 
             // *** misc unicode and line handling stuff ***
 
-            // ignore BOM and zero-width space
-            if (t.equals("\ufeff") || t.equals("\u200b")) {
+            if (t == EwtsTables.m_tok_char) {
+                final char c = tokens.firstChar(i);
+
+                // ignore BOM and zero-width space
+                if (c == '\ufeff' || c == '\u200b') {
+                    i++;
+                    continue ITER;
+                }
+
+                // anything else: pass through
+                out.append(c);
                 i++;
                 continue ITER;
             }
 
             // \\u, \\U unicode characters
-            if (t.startsWith("\\u") || t.startsWith("\\U")) {
-                o = unicodeEscape(warns, line, t);
-                if (o != null) {
-                    i++;
-                    out.append(o);
-                    continue ITER;
-                }
+            if (t == EwtsTables.m_tok_uescape) {
+                out.append(unicodeEscape(warns, line, tokens.text(i), base + tokens.start(i)));
+                i++;
+                continue ITER;
             }
 
             // backslashed characters
-            if (t.startsWith("\\")) {
-                out.append(t.substring(1));
+            if (t == EwtsTables.m_tok_escape) {
+                out.append(str, tokens.start(i) + 1, tokens.start(i + 1));
                 i++;
                 continue ITER;
             }
 
             // count lines
-            if (t.equals("\r\n") || t.equals("\n") || t.equals("\r")) {
+            if (t == EwtsTables.m_tok_crlf || t == TOK_NL || t == TOK_CR) {
                 line++;
-                out.append(t);
+                out.append(name(t));
                 i++;
 
                 // also eat spaces after newlines (optional)
                 if (this.fix_spacing) {
-                    while (tokens[i] != null && tokens[i].equals(" "))
+                    while (tokens.kind(i) == TOK_SPACE)
                         i++;
+                    state.eat_spaces = tokens.kind(i) == TOK_END;
                 }
 
                 continue ITER;
@@ -1683,26 +1698,48 @@ public class EwtsConverter {
 
             // stuff that shouldn't occur out of context: special chars and remaining
             // [a-zA-Z]
-            final char c = t.charAt(0);
-            if (isSpecial(t) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
-                warnl(warns, line, "Unexpected character \"" + t + "\".");
+            final String tn = name(t);
+            final char c = tn.charAt(0);
+            if (warns != null && (isSpecial(t) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                final int start = base + tokens.start(i);
+                warns.add(new Warning(Warning.Code.UNEXPECTED_CHAR, tn, null, line, tn, start, start + tn.length()));
             }
 
             // anything else: pass through
-            out.append(t);
+            out.append(tn);
             i++;
         }
 
-        if (units == 0)
-            warn(warns, "No Tibetan characters found!");
+        if (offsets != null)
+            offsets.add(offsets.source(str.length()), out.length());
+        state.line = line;
+        state.units = units;
+        state.offset = base + str.length();
+        if (state.first < 0)
+            state.first = out.first();
+    }
+
+    // the warnings at the end of the conversion to Unicode
+    private void toUnicodeEnd(final WarningSink warns, final ToUnicodeState state) {
+        if (warns == null)
+            return;
+
+        if (state.nesting > 0)
+            warns.add(new Warning(Warning.Code.UNFINISHED_COMMENT, null, null, state.line, null, -1, -1));
+
+        if (state.units == 0)
+            warns.add(new Warning(Warning.Code.NO_TIBETAN, null, null));
 
         if (this.check_strict) {
-            if (out.length() > 0 && isCombining(out.charAt(0))) {
-                warn(warns, "String starts with combining character '" + out.charAt(0) + "'");
+            if (state.first >= 0 && isCombining((char) state.first)) {
+                warns.add(new Warning(Warning.Code.STARTS_WITH_COMBINING, String.valueOf((char) state.first), null));
             }
         }
+    }
 
-        return out.toString();
+    // is c matched by \s in a regex?
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000b' || c == '\f' || c == '\r';
     }
 
     // does this string consist of only hexadecimal digits?
@@ -1715,31 +1752,381 @@ public class EwtsConverter {
         return true;
     }
 
-    // handle a Converter unicode escape, \\uxxxx or \\Uxxxxxxxx
-    private String unicodeEscape(List<String> warns, int line, String t) {
-        String hex = t.substring(2);
-        if (hex.isEmpty())
-            return null;
+    // handle an EWTS unicode escape, \\uxxxx or \\Uxxxxxxxx
+    private String unicodeEscape(WarningSink warns, int line, String t, int start) {
+        String hex = t.substring(2);
+        if (hex.isEmpty())
+            return null;
+
+        if (!validHex(hex)) {
+            if (warns != null)
+                warns.add(new Warning(Warning.Code.INVALID_HEX, null, null, line, t, start, start + t.length()));
+            return "";
+        }
+
+        return Character.valueOf((char) Integer.parseInt(hex, 16)).toString();
+    }
+
+    // where the warnings of a conversion go, null if nobody listens to them
+    private WarningSink sink(List<String> warns) {
+        if (warns == null && !this.print_warnings)
+            return null;
+        return new WarningSink(null, warns, this.print_warnings);
+    }
+
+    // same for a list of structured warnings
+    private WarningSink structuredSink(List<Warning> warns) {
+        if (warns == null && !this.print_warnings)
+            return null;
+        return new WarningSink(warns, null, this.print_warnings);
+    }
+
+    // collects the warnings of an EwtsConverter as they are, or formatted as
+    // strings, and prints them out if we were asked to (on the standard output,
+    // or on the stream Main gives, the standard error)
+    static final class WarningSink {
+        final List<Warning> warnings;
+        final List<String> strings;
+        final PrintStream print;
+
+        WarningSink(List<Warning> warnings, List<String> strings, boolean print) {
+            this(warnings, strings, print ? System.out : null);
+        }
+
+        WarningSink(List<Warning> warnings, List<String> strings, PrintStream print) {
+            this.warnings = warnings;
+            this.strings = strings;
+            this.print = print;
+        }
+
+        void add(Warning w) {
+            if (this.warnings != null)
+                this.warnings.add(w);
+            if (this.strings == null && this.print == null)
+                return;
+            final String str = w.toString();
+            if (this.strings != null)
+                this.strings.add(str);
+            if (this.print != null)
+                this.print.println(str);
+        }
+    }
+
+    // where the conversions write: a StringBuilder, a caller's char[] from an
+    // offset, a caller's byte[] from an offset in UTF-8, or any other Appendable,
+    // whose IOExceptions are thrown as UncheckedIOExceptions
+    private static final class Output {
+        private StringBuilder sb;
+        private char[] buf;
+        private byte[] bytes;
+        private Appendable app;
+        // start of the output in sb, buf or bytes, next position in buf or bytes,
+        // end of the room in bytes
+        private int start, pos, end;
+        // number of chars appended to app or bytes, and the first of them
+        private int count, first;
+        // a high surrogate written to bytes, encoded with the char after it
+        private char high;
+
+        Output to(final StringBuilder sb) {
+            this.sb = sb;
+            this.buf = null;
+            this.bytes = null;
+            this.app = null;
+            this.start = sb.length();
+            return this;
+        }
+
+        Output to(final char[] buf, final int offset) {
+            this.sb = null;
+            this.buf = buf;
+            this.bytes = null;
+            this.app = null;
+            this.start = this.pos = offset;
+            return this;
+        }
+
+        Output toUtf8(final byte[] bytes, final int offset, final int end) {
+            this.sb = null;
+            this.buf = null;
+            this.bytes = bytes;
+            this.app = null;
+            this.start = this.pos = offset;
+            this.end = end;
+            this.count = 0;
+            this.high = 0;
+            return this;
+        }
+
+        Output to(final Appendable app) {
+            if (app instanceof StringBuilder)
+                return to((StringBuilder) app);
+            this.sb = null;
+            this.buf = null;
+            this.bytes = null;
+            this.app = app;
+            this.count = 0;
+            return this;
+        }
+
+        // forgets the caller's buffer
+        void release() {
+            this.sb = null;
+            this.buf = null;
+            this.bytes = null;
+            this.app = null;
+        }
+
+        void append(final String s) {
+            if (sb != null) {
+                sb.append(s);
+            } else if (buf != null) {
+                final int n = s.length();
+                room(n);
+                s.getChars(0, n, buf, pos);
+                pos += n;
+            } else if (bytes != null) {
+                for (int i = 0, n = s.length(); i < n; i++)
+                    put(s.charAt(i));
+            } else {
+                appendTo(s, 0, s.length());
+            }
+        }
+
+        void append(final char c) {
+            if (sb != null) {
+                sb.append(c);
+            } else if (buf != null) {
+                room(1);
+                buf[pos++] = c;
+            } else if (bytes != null) {
+                put(c);
+            } else {
+                try {
+                    app.append(c);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (count++ == 0)
+                    first = c;
+            }
+        }
+
+        void append(final CharSequence s, final int from, final int to) {
+            if (sb != null) {
+                sb.append(s, from, to);
+            } else if (buf != null) {
+                room(to - from);
+                if (s instanceof String) {
+                    ((String) s).getChars(from, to, buf, pos);
+                    pos += to - from;
+                } else {
+                    for (int i = from; i < to; i++)
+                        buf[pos++] = s.charAt(i);
+                }
+            } else if (bytes != null) {
+                for (int i = from; i < to; i++)
+                    put(s.charAt(i));
+            } else {
+                appendTo(s, from, to);
+            }
+        }
+
+        // encodes c to bytes, an unpaired surrogate as '?' like String.getBytes()
+        private void put(final char c) {
+            if (count++ == 0)
+                first = c;
+            if (high != 0) {
+                final char h = high;
+                high = 0;
+                if (Character.isLowSurrogate(c)) {
+                    pos = Utf8.encode(Character.toCodePoint(h, c), bytes, pos, end);
+                    return;
+                }
+                pos = Utf8.encode('?', bytes, pos, end);
+            }
+            if (Character.isHighSurrogate(c))
+                high = c;
+            else
+                pos = Utf8.encode(Character.isSurrogate(c) ? '?' : c, bytes, pos, end);
+        }
+
+        // writes what is left to write to bytes
+        void flush() {
+            if (high != 0) {
+                high = 0;
+                pos = Utf8.encode('?', bytes, pos, end);
+            }
+        }
+
+        private void appendTo(final CharSequence s, final int from, final int to) {
+            if (from == to)
+                return;
+            try {
+                app.append(s, from, to);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (count == 0)
+                first = s.charAt(from);
+            count += to - from;
+        }
+
+        private void room(final int n) {
+            if (pos + n > buf.length)
+                throw new BufferOverflowException();
+        }
+
+        // number of chars written (of bytes to bytes)
+        int length() {
+            return sb != null ? sb.length() - start : buf != null || bytes != null ? pos - start : count;
+        }
+
+        // the first char written, -1 if there is none
+        int first() {
+            if (sb != null)
+                return sb.length() == start ? -1 : sb.charAt(start);
+            if (buf != null)
+                return pos == start ? -1 : buf[start];
+            return count == 0 ? -1 : first;
+        }
+    }
+
+    // a part of a char[] seen as a CharSequence, without copying it
+    private static final class CharArraySequence implements CharSequence {
+        private char[] buf;
+        private int offset, length;
+
+        CharArraySequence of(final char[] buf, final int offset, final int length) {
+            this.buf = buf;
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return buf[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return new String(buf, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, offset, length);
+        }
+    }
+
+    // the objects of the conversions into a caller's buffer, reused by the
+    // conversions of each thread so that they allocate nothing when the tsekbars
+    // are found in the cache
+    private static final class Scratch {
+        final TokenStream tokens = new TokenStream("");
+        final ToUnicodeState state = new ToUnicodeState();
+        final Output output = new Output();
+        final CharArraySequence chars = new CharArraySequence();
+        final Normalizer normalizer = new Normalizer();
+        // the normalized text, and the text converted before its normalization
+        StringBuilder normalized = new StringBuilder();
+        StringBuilder converted = new StringBuilder();
+        // the decoded UTF-8 text, the bytes of a direct ByteBuffer, and the
+        // decoder of the UTF-8 that is not ASCII or in 2 or 3 bytes
+        char[] decoded = new char[0];
+        byte[] bytes = new byte[0];
+        CharsetDecoder decoder;
+        final int[] lines = new int[2];
+        // a conversion of this thread is using it (the output or the warning list
+        // of the caller converted something else)
+        boolean busy = false;
+
+        private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+            @Override
+            protected Scratch initialValue() {
+                return new Scratch();
+            }
+        };
+
+        static Scratch acquire() {
+            Scratch s = SCRATCH.get();
+            if (s.busy)
+                s = new Scratch();
+            s.busy = true;
+            return s;
+        }
 
-        if (!validHex(hex)) {
-            warnl(warns, line, "\"" + t + "\": invalid hex code.");
-            return "";
+        void release() {
+            this.busy = false;
+            this.output.release();
+            this.chars.of(null, 0, 0);
+            this.tokens.reset("");
+            // do not keep the buffers of a long text
+            if (this.normalized.capacity() > STREAM_BUFFER_SIZE)
+                this.normalized = new StringBuilder();
+            else
+                this.normalized.setLength(0);
+            if (this.converted.capacity() > STREAM_BUFFER_SIZE)
+                this.converted = new StringBuilder();
+            else
+                this.converted.setLength(0);
+            if (this.decoded.length > STREAM_BUFFER_SIZE)
+                this.decoded = new char[0];
+            if (this.bytes.length > STREAM_BUFFER_SIZE)
+                this.bytes = new byte[0];
         }
 
-        return Character.valueOf((char) Integer.parseInt(hex, 16)).toString();
-    }
+        // the text of length bytes of UTF-8 from offset in str
+        CharSequence decode(final byte[] str, final int offset, final int length) {
+            if (this.decoded.length < length)
+                this.decoded = new char[length];
+            if (this.decoder == null)
+                this.decoder = Utf8.newDecoder();
+            return this.chars.of(this.decoded, 0, Utf8.decode(str, offset, length, this.decoded, this.decoder));
+        }
 
-    // generate a warning if we are keeping them; prints it out if we were asked to
-    private void warn(List<String> warns, String str) {
-        if (warns != null)
-            warns.add(str);
-        if (this.print_warnings)
-            System.out.println(str);
-    }
+        // the text of the remaining bytes of UTF-8 of str, without moving it
+        CharSequence decode(final ByteBuffer str) {
+            if (str.hasArray())
+                return decode(str.array(), str.arrayOffset() + str.position(), str.remaining());
+            final int n = str.remaining();
+            if (this.bytes.length < n)
+                this.bytes = new byte[n];
+            str.duplicate().get(this.bytes, 0, n);
+            return decode(this.bytes, 0, n);
+        }
 
-    // warn with line number
-    private void warnl(List<String> warns, int line, String str) {
-        warn(warns, "line " + line + ": " + str);
+        // where to write UTF-8 to the remaining bytes of out
+        Output encode(final ByteBuffer out) {
+            if (out.hasArray()) {
+                final int offset = out.arrayOffset() + out.position();
+                return this.output.toUtf8(out.array(), offset, offset + out.remaining());
+            }
+            // the input of a direct buffer was in this.bytes, it is decoded now
+            final int n = out.remaining();
+            if (this.bytes.length < n)
+                this.bytes = new byte[n];
+            return this.output.toUtf8(this.bytes, 0, n);
+        }
+
+        // the end of a conversion to out: n bytes were written, the whole input was
+        // read
+        int written(final ByteBuffer str, final ByteBuffer out) {
+            this.output.flush();
+            final int n = this.output.length();
+            if (out.hasArray())
+                out.position(out.position() + n);
+            else
+                out.put(this.bytes, 0, n);
+            str.position(str.limit());
+            return n;
+        }
     }
 
     // debug print
@@ -1770,18 +2157,22 @@ public class EwtsConverter {
         return out.toString();
     }
 
-    // Converts one stack's worth of Converter into unicode, starting at the given
+    // Converts one stack's worth of EWTS into unicode, starting at the given
     // index
     // within the array of tokens.
     // Assumes that the first available token is valid, and is either a vowel or a
     // consonant.
     // Returns a WylieStack object.
     @SuppressWarnings("unused")
-    private WylieStack toUnicodeOneStack(String[] tokens, int i) {
+    private WylieStack toUnicodeOneStack(TokenStream tokens, int i, boolean keep, StringBuilder out) {
+        // no checks if nobody listens to the warnings
+        final boolean check = keep && this.check;
+        final boolean check_strict = keep && this.check_strict;
         int orig_i = i;
-        String t, t2, o;
-        StringBuilder out = new StringBuilder();
-        ArrayList<String> warns = new ArrayList<String>();
+        int t, t2;
+        // the stack is appended to out, after what was already there
+        final int mark = out.length();
+        List<Warning> warns = null;
 
         int consonants = 0; // how many consonants found
         String vowel_found = null; // any vowels (including a-chen)
@@ -1793,22 +2184,21 @@ public class EwtsConverter {
                                                                              // class
 
         // do we have a superscript?
-        t = tokens[i];
-        t2 = tokens[i + 1];
-        if (t2 != null && isSuperscript(t) && superscript(t, t2)) {
+        t = tokens.kind(i);
+        t2 = tokens.kind(i + 1);
+        if (t2 != TOK_END && isSuperscript(t) && superscript(name(t), name(t2))) {
 
-            if (this.check_strict) {
+            if (check_strict) {
                 String next = consonantString(tokens, i + 1);
-                if (!superscript(t, next)) {
-                    next = next.replace("+", "");
-                    warns.add("Superscript \"" + t + "\" does not occur above combination \"" + next + "\".");
+                if (!superscript(name(t), next)) {
+                    warns = addWarning(warns, Warning.Code.SUPERSCRIPT_NOT_ABOVE, name(t), next.replace("+", ""));
                 }
             }
 
             out.append(consonant(t));
             consonants++;
             i++;
-            while (tokens[i] != null && tokens[i].equals("^")) {
+            while (tokens.kind(i) == TOK_CARET) {
                 caret++;
                 i++;
             }
@@ -1820,23 +2210,23 @@ public class EwtsConverter {
         MAIN: while (true) {
 
             // main consonant (or a "a" after a "+")
-            t = tokens[i];
-            if (consonant(t) != null || (out.length() > 0 && subjoined(t) != null)) {
-                if (out.length() > 0) {
+            t = tokens.kind(i);
+            if (consonant(t) != null || (out.length() > mark && subjoined(t) != null)) {
+                if (out.length() > mark) {
                     out.append(subjoined(t));
                 } else {
                     out.append(consonant(t));
                 }
                 i++;
 
-                if (t.equals("a")) {
+                if (t == TOK_A) {
                     vowel_found = "a";
                 } else {
                     consonants++;
-                    single_consonant = t;
+                    single_consonant = name(t);
                 }
 
-                while (tokens[i] != null && tokens[i].equals("^")) {
+                while (tokens.kind(i) == TOK_CARET) {
                     caret++;
                     i++;
                 }
@@ -1844,27 +2234,27 @@ public class EwtsConverter {
                 // subjoined: rata, yata, lata, wazur. there can be up two subjoined letters in
                 // a stack.
                 for (int z = 0; z < 2; z++) {
-                    t2 = tokens[i];
+                    t2 = tokens.kind(i);
 
-                    if (t2 != null && isSubscript(t2)) {
+                    if (t2 != TOK_END && isSubscript(t2)) {
 
                         // lata does not occur below multiple consonants
                         // (otherwise we mess up "brla" = "b.r+la")
-                        if (t2.equals("l") && consonants > 1)
+                        if (t2 == TOK_L && consonants > 1)
                             break;
 
                         // full stack checking (disabled by "+")
-                        if (this.check_strict && !plus) {
+                        if (check_strict && !plus) {
                             String prev = consonantStringBackwards(tokens, i - 1, orig_i);
-                            if (!subscript(t2, prev)) {
-                                prev = prev.replace("+", "");
-                                warns.add("Subjoined \"" + t2 + "\" not expected after \"" + prev + "\".");
+                            if (!subscript(name(t2), prev)) {
+                                warns = addWarning(warns, Warning.Code.SUBJOINED_NOT_AFTER, name(t2),
+                                        prev.replace("+", ""));
                             }
 
                             // simple check only
-                        } else if (this.check) {
-                            if (!subscript(t2, t) && !(z == 1 && t2.equals("w") && t.equals("y"))) {
-                                warns.add("Subjoined \"" + t2 + "\"not expected after \"" + t + "\".");
+                        } else if (check) {
+                            if (!subscript(name(t2), name(t)) && !(z == 1 && t2 == TOK_W && t == TOK_Y)) {
+                                warns = addWarning(warns, Warning.Code.SUBJOINED_NOT_AFTER, name(t2), name(t));
                             }
                         }
 
@@ -1872,7 +2262,7 @@ public class EwtsConverter {
                         i++;
                         consonants++;
 
-                        while (tokens[i] != null && tokens[i].equals("^")) {
+                        while (tokens.kind(i) == TOK_CARET) {
                             caret++;
                             i++;
                         }
@@ -1885,55 +2275,54 @@ public class EwtsConverter {
                 }
             }
 
-            // caret (^) can come anywhere in Converter but in Unicode we generate it at the
+            // caret (^) can come anywhere in EWTS but in Unicode we generate it at the
             // end of
             // the stack but before vowels if it came there (seems to be what OpenOffice
             // expects),
-            // or at the very end of the stack if that's how it was in the Converter.
+            // or at the very end of the stack if that's how it was in the EWTS.
             if (caret > 0) {
-                if (caret > 1) {
-                    warns.add("Cannot have more than one \"^\" applied to the same stack.");
+                if (caret > 1 && keep) {
+                    warns = addWarning(warns, Warning.Code.MULTIPLE_CARETS, null, null);
                 }
-                final_found.put(final_class("^"), "^");
-                out.append(final_uni("^"));
+                final_found.put(final_class(TOK_CARET), "^");
+                out.append(final_uni(TOK_CARET));
                 caret = 0;
             }
 
             // vowel(s)
-            t = tokens[i];
-            if (t != null && vowel(t) != null) {
-                if (out.length() == 0)
-                    out.append(vowel("a"));
-                if (!t.equals("a"))
+            t = tokens.kind(i);
+            if (t != TOK_END && vowel(t) != null) {
+                if (out.length() == mark)
+                    out.append(vowel(TOK_A));
+                if (t != TOK_A)
                     out.append(vowel(t));
                 i++;
-                vowel_found = t;
-                if (!t.equals("a"))
-                    vowel_sign = t;
+                vowel_found = name(t);
+                if (t != TOK_A)
+                    vowel_sign = name(t);
             }
 
             // plus sign: forces more subjoining
-            t = tokens[i];
-            if (t != null && t.equals("+")) {
+            t = tokens.kind(i);
+            if (t == TOK_PLUS) {
                 i++;
                 plus = true;
 
                 // sanity check: next token must be vowel or subjoinable consonant.
-                t = tokens[i];
-                if (t == null || (vowel(t) == null && subjoined(t) == null)) {
-                    if (this.check)
-                        warns.add("Expected vowel or consonant after \"+\".");
+                t = tokens.kind(i);
+                if (t == TOK_END || (vowel(t) == null && subjoined(t) == null)) {
+                    if (check)
+                        warns = addWarning(warns, Warning.Code.NOTHING_AFTER_PLUS, null, null);
                     break MAIN;
                 }
 
                 // consonants after vowels doesn't make much sense but process it anyway
-                if (this.check) {
+                if (check) {
                     if (vowel(t) == null && vowel_sign != null) {
-                        warns.add(
-                                "Cannot subjoin consonant (" + t + ") after vowel (" + vowel_sign + ") in same stack.");
+                        warns = addWarning(warns, Warning.Code.SUBJOINED_AFTER_VOWEL, name(t), vowel_sign);
 
-                    } else if (t.equals("a") && vowel_sign != null) {
-                        warns.add("Cannot subjoin a-chen (a) after vowel (" + vowel_sign + ") in same stack.");
+                    } else if (t == TOK_A && vowel_sign != null) {
+                        warns = addWarning(warns, Warning.Code.ACHEN_AFTER_VOWEL, vowel_sign, null);
                     }
                 }
 
@@ -1944,31 +2333,32 @@ public class EwtsConverter {
         }
 
         // final tokens
-        t = tokens[i];
-        while (t != null && final_class(t) != null) {
+        t = tokens.kind(i);
+        while (t != TOK_END && final_class(t) != null) {
             String uni = final_uni(t);
             String klass = final_class(t);
 
             // check for duplicates
             if (final_found.containsKey(klass)) {
-                if (final_found.get(klass).equals(t)) {
-                    warns.add("Cannot have two \"" + t + "\" applied to the same stack.");
+                if (!keep) {
+                    // nothing to warn about
+                } else if (final_found.get(klass).equals(name(t))) {
+                    warns = addWarning(warns, Warning.Code.DUPLICATE_FINAL, name(t), null);
                 } else {
-                    warns.add("Cannot have \"" + t + "\" and \"" + final_found.get(klass)
-                            + "\" applied to the same stack.");
+                    warns = addWarning(warns, Warning.Code.CONFLICTING_FINALS, name(t), final_found.get(klass));
                 }
             } else {
-                final_found.put(klass, t);
+                final_found.put(klass, name(t));
                 out.append(uni);
             }
 
             i++;
             single_consonant = null;
-            t = tokens[i];
+            t = tokens.kind(i);
         }
 
         // if next is a dot "." (stack separator), skip it.
-        if (tokens[i] != null && tokens[i].equals("."))
+        if (tokens.kind(i) == TOK_DOT)
             i++;
 
         // if we had more than a consonant and no vowel, and no explicit "+" joining,
@@ -1976,14 +2366,14 @@ public class EwtsConverter {
         // return the 1st consonant alone
         if (consonants > 1 && vowel_found == null) {
             if (plus) {
-                if (this.check)
-                    warns.add("Stack with multiple consonants should end with vowel.");
+                if (check)
+                    warns = addWarning(warns, Warning.Code.STACK_WITHOUT_VOWEL, null, null);
             } else {
                 i = orig_i + 1;
                 consonants = 1;
-                single_consonant = tokens[orig_i];
-                out.setLength(0);
-                out.append(consonant(single_consonant));
+                single_consonant = name(tokens.kind(orig_i));
+                out.setLength(mark);
+                out.append(consonant(tokens.kind(orig_i)));
             }
         }
 
@@ -1995,7 +2385,6 @@ public class EwtsConverter {
         // return the stuff as a WylieStack struct
         WylieStack ret = new WylieStack();
 
-        ret.uni_string = out.toString();
         ret.tokens_used = i - orig_i;
 
         if (vowel_found != null) {
@@ -2016,7 +2405,30 @@ public class EwtsConverter {
         return ret;
     }
 
-    // Converts successive stacks of Converter into unicode, starting at the given
+    // toUnicodeOneTsekbar() through the cache, if there is one. The result only
+    // depends on the tokens of the tsekbar and on the kind of the token after them,
+    // except for warnings that quote that token in non-strict check mode. Cached
+    // results always have their warnings, whether the caller keeps them or not.
+    private WylieTsekbar toUnicodeOneTsekbarCached(TokenStream tokens, int i, boolean keep) {
+        if (this.cache == null)
+            return toUnicodeOneTsekbar(tokens, i, keep);
+        int end = i;
+        while (EwtsTables.m_tsekbar_tok[tokens.kind(end)])
+            end++;
+        final int after = tokens.kind(end);
+        if (end - i >= TsekbarCache.MAX_KEY_LENGTH
+                || (this.check && !this.check_strict && after != TOK_END && name(after) == null))
+            return toUnicodeOneTsekbar(tokens, i, keep);
+        final int flags = this.cache_flags | (after << 8);
+        WylieTsekbar tb = (WylieTsekbar) tokens.cacheGet(this.cache, flags, i, end);
+        if (tb == null) {
+            tb = toUnicodeOneTsekbar(tokens, i, true);
+            tokens.cachePut(this.cache, flags, i, end, tb);
+        }
+        return tb;
+    }
+
+    // Converts successive stacks of EWTS into unicode, starting at the given
     // index
     // within the array of tokens.
     //
@@ -2024,9 +2436,20 @@ public class EwtsConverter {
     // consonant.
     // Returns a WylieTsekbar object
     @SuppressWarnings("unused")
-    private WylieTsekbar toUnicodeOneTsekbar(String[] tokens, int i) {
+    private WylieTsekbar toUnicodeOneTsekbar(TokenStream tokens, int i, boolean keep) {
+        final StringBuilder out = new StringBuilder();
+        final WylieTsekbar ret = toUnicodeOneTsekbar(tokens, i, keep, out);
+        ret.uni_string = out.toString();
+        return ret;
+    }
+
+    // same, appending the converted tsekbar to out instead of setting its uni_string
+    private WylieTsekbar toUnicodeOneTsekbar(TokenStream tokens, int i, boolean keep, StringBuilder out) {
+        // no checks if nobody listens to the warnings
+        final boolean check = keep && this.check;
+        final boolean check_strict = keep && this.check_strict;
         int orig_i = i;
-        String t = tokens[i];
+        int t = tokens.kind(i);
 
         // variables for tracking the state within the syllable as we parse it
         WylieStack stack = null;
@@ -2041,8 +2464,7 @@ public class EwtsConverter {
         ArrayList<String> consonants = new ArrayList<String>();
         int root_idx = -1;
 
-        StringBuilder out = new StringBuilder();
-        ArrayList<String> warns = new ArrayList<String>();
+        List<Warning> warns = null;
 
         // the type of token that we are expecting next in the input stream
         // - PREFIX : expect a prefix consonant, or a main stack
@@ -2063,19 +2485,22 @@ public class EwtsConverter {
         State state = State.PREFIX;
 
         // iterate over the stacks of a tsek-bar
-        STACK: while (t != null && (vowel(t) != null || consonant(t) != null) && !visarga) {
+        STACK: while (t != TOK_END && (vowel(t) != null || consonant(t) != null) && !visarga) {
 
             // translate a stack
             if (stack != null)
                 prev_cons = stack.single_consonant;
-            stack = toUnicodeOneStack(tokens, i);
+            stack = toUnicodeOneStack(tokens, i, keep, out);
             i += stack.tokens_used;
-            t = tokens[i];
-            out.append(stack.uni_string);
-            warns.addAll(stack.warns);
+            t = tokens.kind(i);
+            if (stack.warns != null) {
+                if (warns == null)
+                    warns = new ArrayList<Warning>(stack.warns.size());
+                warns.addAll(stack.warns);
+            }
             visarga = stack.visarga;
 
-            if (!this.check)
+            if (!check)
                 continue;
 
             // check for syllable structure consistency by iterating a simple state machine
@@ -2084,17 +2509,17 @@ public class EwtsConverter {
                 consonants.add(stack.single_consonant);
 
                 if (isPrefix(stack.single_consonant)) {
-                    String next = t;
-                    if (this.check_strict)
+                    String next = tokens.text(i);
+                    if (check_strict)
                         next = consonantString(tokens, i);
 
                     if (next != null && !prefix(stack.single_consonant, next)) {
-                        next = next.replace("+", "");
-                        warns.add("Prefix \"" + stack.single_consonant + "\" does not occur before \"" + next + "\".");
+                        warns = addWarning(warns, Warning.Code.PREFIX_NOT_BEFORE, stack.single_consonant,
+                                next.replace("+", ""));
                     }
 
                 } else {
-                    warns.add("Invalid prefix consonant: \"" + stack.single_consonant + "\".");
+                    warns = addWarning(warns, Warning.Code.INVALID_PREFIX, stack.single_consonant, null);
                 }
                 state = State.MAIN;
 
@@ -2112,16 +2537,16 @@ public class EwtsConverter {
 
                 // - unexpected single consonant after prefix
             } else if (state == State.MAIN) {
-                warns.add("Expected vowel after \"" + stack.single_consonant + "\".");
+                warns = addWarning(warns, Warning.Code.VOWEL_EXPECTED, stack.single_consonant, null);
 
                 // - 1st suffix
             } else if (state == State.SUFF1) {
                 consonants.add(stack.single_consonant);
 
                 // check this one only in strict mode b/c it trips on lots of Skt stuff
-                if (this.check_strict) {
+                if (check_strict) {
                     if (!isSuffix(stack.single_consonant)) {
-                        warns.add("Invalid suffix consonant: \"" + stack.single_consonant + "\".");
+                        warns = addWarning(warns, Warning.Code.INVALID_SUFFIX, stack.single_consonant, null);
                     }
                 }
 
@@ -2132,25 +2557,24 @@ public class EwtsConverter {
                 consonants.add(stack.single_consonant);
                 if (isSuff2(stack.single_consonant)) {
                     if (!suff2(stack.single_consonant, prev_cons)) {
-                        warns.add("Second suffix \"" + stack.single_consonant + "\" does not occur after \"" + prev_cons
-                                + "\".");
+                        warns = addWarning(warns, Warning.Code.SUFFIX2_NOT_AFTER, stack.single_consonant, prev_cons);
                     }
                 } else {
                     // handles pa'm, pa'ng
-                    if (!m_affixedsuff2.contains(stack.single_consonant) || !prev_cons.equals("'")) {
-                        warns.add("Invalid 2nd suffix consonant: \"" + stack.single_consonant + "\".");
+                    if (!SyllableTables.isAffixedSuff2(stack.single_consonant) || !prev_cons.equals("'")) {
+                        warns = addWarning(warns, Warning.Code.INVALID_SUFFIX2, stack.single_consonant, null);
                     }
                 }
                 state = State.NONE;
 
                 // - more crap after a 2nd suffix
             } else if (state == State.NONE) {
-                warns.add("Cannot have another consonant \"" + stack.single_consonant + "\" after 2nd suffix.");
+                warns = addWarning(warns, Warning.Code.AFTER_SUFFIX2, stack.single_consonant, null);
             }
         }
 
-        if (state == State.MAIN && stack.single_consonant != null && isPrefix(stack.single_consonant)) {
-            warns.add("Vowel expected after \"" + stack.single_consonant + "\".");
+        if (keep && state == State.MAIN && stack.single_consonant != null && isPrefix(stack.single_consonant)) {
+            warns = addWarning(warns, Warning.Code.PREFIX_WITHOUT_VOWEL, stack.single_consonant, null);
         }
 
         // check root consonant placement only if there were no warnings so far, and the
@@ -2158,12 +2582,12 @@ public class EwtsConverter {
         // looks ambiguous. not many checks are needed here because the previous state
         // machine
         // already takes care of most illegal combinations.
-        if (this.check && warns.size() == 0 && check_root && root_idx >= 0) {
+        if (check && warns == null && check_root && root_idx >= 0) {
 
             // 2 letters where each could be prefix/suffix: root is 1st
             if (consonants.size() == 2 && root_idx != 0 && prefix(consonants.get(0), consonants.get(1))
                     && isSuffix(consonants.get(1))) {
-                warns.add("Syllable should probably be \"" + consonants.get(0) + "a" + consonants.get(1) + "\".");
+                warns = addWarning(warns, Warning.Code.PROBABLE_SYLLABLE, consonants.get(0), consonants.get(1));
 
                 // 3 letters where 1st can be prefix, 2nd can be postfix before "s" and last is
                 // "s":
@@ -2175,7 +2599,7 @@ public class EwtsConverter {
                 cc = cc.replace('\u2019', '\''); // typographical quotes
                 Integer expect_key = ambiguous_key(cc);
                 if (expect_key != null && expect_key.intValue() != root_idx) {
-                    warns.add("Syllable should probably be \"" + ambiguous_wylie(cc) + "\".");
+                    warns = addWarning(warns, Warning.Code.PROBABLE_SYLLABLE, ambiguous_wylie(cc), null);
                 }
             }
         }
@@ -2183,54 +2607,79 @@ public class EwtsConverter {
         // return the stuff as a WylieTsekbar struct
         WylieTsekbar ret = new WylieTsekbar();
 
-        ret.uni_string = out.toString();
         ret.tokens_used = i - orig_i;
         ret.warns = warns;
 
         return ret;
     }
 
+    // adds a warning to a list that is only created for the first one
+    private static List<Warning> addWarning(List<Warning> warns, Warning.Code code, String arg1, String arg2) {
+        if (warns == null)
+            warns = new ArrayList<Warning>(2);
+        warns.add(new Warning(code, arg1, arg2));
+        return warns;
+    }
+
     // Looking from i onwards within tokens, returns as many consonants as it finds,
     // up to and not including the next vowel or punctuation. Skips the caret "^".
     // Returns: a string of consonants joined by "+" signs.
-    private String consonantString(String[] tokens, int i) {
-        ArrayList<String> out = new ArrayList<String>();
-        String t;
+    private String consonantString(TokenStream tokens, int i) {
+        int from = i;
+        int t;
 
-        while (tokens[i] != null) {
-            t = tokens[i++];
-            if (t.equals("+") || t.equals("^"))
-                continue;
-            if (consonant(t) == null)
+        while ((t = tokens.kind(i)) != TOK_END) {
+            if (t != TOK_PLUS && t != TOK_CARET && consonant(t) == null)
                 break;
-            out.add(t);
+            i++;
         }
 
-        return joinStrings(out, "+");
+        return joinConsonants(tokens, from, i);
     }
 
     // Looking from i backwards within tokens, at most up to orig_i, returns as
     // many consonants as it finds, up to and not including the next vowel or
     // punctuation. Skips the caret "^".
     // Returns: a string of consonants (in forward order) joined by "+" signs.
-    private String consonantStringBackwards(String[] tokens, int i, int orig_i) {
-        LinkedList<String> out = new LinkedList<String>();
-        String t;
+    private String consonantStringBackwards(TokenStream tokens, int i, int orig_i) {
+        int to = i + 1;
+        int t;
 
-        while (i >= orig_i && tokens[i] != null) {
-            t = tokens[i--];
-            if (t.equals("+") || t.equals("^"))
-                continue;
-            if (consonant(t) == null)
+        while (i >= orig_i && (t = tokens.kind(i)) != TOK_END) {
+            if (t != TOK_PLUS && t != TOK_CARET && consonant(t) == null)
                 break;
-            out.addFirst(t);
+            i--;
+        }
+
+        return joinConsonants(tokens, i + 1, to);
+    }
+
+    // joins the consonants of tokens from (included) to to (excluded) with "+"
+    // signs, skipping "+" and "^". Only allocates for more than one consonant.
+    private String joinConsonants(TokenStream tokens, int from, int to) {
+        String first = null;
+        StringBuilder out = null;
+
+        for (int i = from; i < to; i++) {
+            final int t = tokens.kind(i);
+            if (t == TOK_PLUS || t == TOK_CARET)
+                continue;
+            if (first == null) {
+                first = name(t);
+            } else {
+                if (out == null)
+                    out = new StringBuilder(first);
+                out.append('+').append(name(t));
+            }
         }
 
-        return joinStrings(out, "+");
+        if (out != null)
+            return out.toString();
+        return first == null ? "" : first;
     }
 
     /**
-     * Converts from Unicode strings to Converter (EWTS) transliteration.
+     * Converts from Unicode strings to EWTS transliteration.
      * 
      * @param str
      *            the Unicode string to be converted
@@ -2241,30 +2690,426 @@ public class EwtsConverter {
     }
 
     /**
-     * Converts from Unicode strings to Converter (EWTS) transliteration.
+     * Converts from Unicode strings to EWTS transliteration.
      * 
      * @param str
      *            the Unicode string to be converted
      * @param warns
      *            the warning list that will be filled
      * @param escape
-     *            whether to escape non-tibetan characters according to Converter
+     *            whether to escape non-tibetan characters according to EWTS
      *            encoding. if escape == false, anything that is not tibetan will be
      *            just passed through.
      * @return the corresponding EWTS string
      */
     public String toWylie(String str, List<String> warns, boolean escape) {
+        return toWylieString(str, sink(warns), escape, null);
+    }
+
+    /**
+     * Converts from Unicode strings to EWTS transliteration, with
+     * structured warnings.
+     * 
+     * @param str
+     *            the Unicode string to be converted
+     * @param escape
+     *            whether to escape non-tibetan characters according to EWTS
+     *            encoding
+     * @param warnings
+     *            the warning list that will be filled, or null
+     * @return the corresponding EWTS string
+     */
+    public String toWylie(String str, boolean escape, List<Warning> warnings) {
+        return toWylieString(str, structuredSink(warnings), escape, null);
+    }
+
+    /**
+     * Converts from Unicode strings to EWTS transliteration, with
+     * structured warnings, recording the offsets of its tsekbars and other units
+     * in the string and in the result.
+     * 
+     * @param str
+     *            the Unicode string to be converted
+     * @param escape
+     *            whether to escape non-tibetan characters according to EWTS
+     *            encoding
+     * @param warnings
+     *            the warning list that will be filled, or null
+     * @param offsets
+     *            the map to fill, cleared first
+     * @return the corresponding EWTS string
+     */
+    public String toWylie(String str, boolean escape, List<Warning> warnings, OffsetMap offsets) {
+        return toWylieString(str, structuredSink(warnings), escape, offsets);
+    }
+
+    /**
+     * Converts a Unicode text to EWTS into an Appendable, with structured
+     * warnings. The text is not copied unless it has deprecated pre-composed
+     * vowels, and the conversion writes to a StringBuilder directly. With a
+     * TsekbarCache and reused buffers, converting text that is already in the
+     * cache allocates nothing.
+     * 
+     * @param str
+     *            the Unicode text to convert
+     * @param out
+     *            where to append the EWTS
+     * @param escape
+     *            whether to escape non-tibetan characters according to EWTS
+     *            encoding
+     * @param warnings
+     *            the warning list that will be filled, or null
+     * @return the number of chars appended to out
+     * @throws IOException
+     *             if out throws one
+     */
+    public int toWylie(final CharSequence str, final Appendable out, final boolean escape,
+            final List<Warning> warnings) throws IOException {
+        final Scratch s = Scratch.acquire();
+        try {
+            return toWylieInto(str, s.output.to(out), structuredSink(warnings), escape, null, s);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            s.release();
+        }
+    }
+
+    /**
+     * Converts a part of a char[] from Unicode to EWTS into a char[], with
+     * structured warnings, see toWylie(CharSequence, Appendable, boolean, List).
+     * 
+     * @param str
+     *            the chars of the Unicode text to convert
+     * @param offset
+     *            the offset of the text in str
+     * @param length
+     *            the length of the text
+     * @param out
+     *            where to write the EWTS
+     * @param outOffset
+     *            the offset in out of the EWTS
+     * @param escape
+     *            whether to escape non-tibetan characters according to EWTS
+     *            encoding
+     * @param warnings
+     *            the warning list that will be filled, or null
+     * @return the number of chars written to out
+     * @throws java.nio.BufferOverflowException
+     *             if the EWTS does not fit in out, whose content after outOffset
+     *             is then undefined
+     */
+    public int toWylie(final char[] str, final int offset, final int length, final char[] out, final int outOffset,
+            final boolean escape, final List<Warning> warnings) {
+        return toWylie(str, offset, length, out, outOffset, escape, warnings, null);
+    }
+
+    /**
+     * Same as toWylie(char[], int, int, char[], int, boolean, List), recording
+     * the offsets of the units of the text in an OffsetMap, relative to offset in
+     * str and to outOffset in out.
+     * 
+     * @param str
+     *            the chars of the Unicode text to convert
+     * @param offset
+     *            the offset of the text in str
+     * @param length
+     *            the length of the text
+     * @param out
+     *            where to write the EWTS
+     * @param outOffset
+     *            the offset in out of the EWTS
+     * @param escape
+     *            whether to escape non-tibetan characters according to EWTS
+     *            encoding
+     * @param warnings
+     *            the warning list that will be filled, or null
+     * @param offsets
+     *            the map to fill (cleared first), or null
+     * @return the number of chars written to out
+     * @throws java.nio.BufferOverflowException
+     *             if the EWTS does not fit in out
+     */
+    public int toWylie(final char[] str, final int offset, final int length, final char[] out, final int outOffset,
+            final boolean escape, final List<Warning> warnings, final OffsetMap offsets) {
+        checkRange(str, offset, length, out, outOffset);
+        final Scratch s = Scratch.acquire();
+        try {
+            return toWylieInto(s.chars.of(str, offset, length), s.output.to(out, outOffset), structuredSink(warnings),
+                    escape, offsets, s);
+        } finally {
+            s.release();
+        }
+    }
+
+    /**
+     * Converts a part of a byte[] of UTF-8 text from Unicode to EWTS, written
+     * into a byte[], with structured warnings, see toUnicode(byte[], int, int,
+     * byte[], int, boolean, boolean, List).
+     * 
+     * @param str
+     *            the bytes of the Unicode text to convert
+     * @param offset
+     *            the offset of the text in str
+     * @param length
+     *            the length of the text, in bytes
+     * @param out
+     *            where to write the EWTS
+     * @param outOffset
+     *            the offset in out of the EWTS
+     * @param escape
+     *            whether to escape non-tibetan characters according to EWTS
+     *            encoding
+     * @param warnings
+     *            the warning list that will be filled, or null
+     * @return the number of bytes written to out
+     * @throws java.nio.BufferOverflowException
+     *             if the EWTS does not fit in out, whose content after outOffset
+     *             is then undefined
+     */
+    public int toWylie(final byte[] str, final int offset, final int length, final byte[] out, final int outOffset,
+            final boolean escape, final List<Warning> warnings) {
+        checkRange(str.length, offset, length, out.length, outOffset);
+        final Scratch s = Scratch.acquire();
+        try {
+            final Output o = s.output.toUtf8(out, outOffset, out.length);
+            toWylieInto(s.decode(str, offset, length), o, structuredSink(warnings), escape, null, s);
+            o.flush();
+            return o.length();
+        } finally {
+            s.release();
+        }
+    }
+
+    /**
+     * Converts the remaining bytes of a buffer of UTF-8 text from Unicode to
+     * EWTS, written to the remaining bytes of another buffer, see
+     * toUnicode(ByteBuffer, ByteBuffer, boolean, boolean, List).
+     * 
+     * @param str
+     *            the Unicode text to convert
+     * @param out
+     *            where to write the EWTS
+     * @param escape
+     *            whether to escape non-tibetan characters according to EWTS
+     *            encoding
+     * @param warnings
+     *            the warning list that will be filled, or null
+     * @return the number of bytes written to out
+     * @throws java.nio.BufferOverflowException
+     *             if the EWTS does not fit in out, the positions of the buffers
+     *             then do not change
+     */
+    public int toWylie(final ByteBuffer str, final ByteBuffer out, final boolean escape,
+            final List<Warning> warnings) {
+        final Scratch s = Scratch.acquire();
+        try {
+            final CharSequence text = s.decode(str);
+            toWylieInto(text, s.encode(out), structuredSink(warnings), escape, null, s);
+            return s.written(str, out);
+        } finally {
+            s.release();
+        }
+    }
+
+    private int toWylieInto(final CharSequence str, final Output out, final WarningSink warns, final boolean escape,
+            final OffsetMap offsets, final Scratch s) {
+        s.lines[0] = 1;
+        s.lines[1] = 0;
+        if (offsets != null)
+            offsets.clear();
+        toWylieChunk(str, out, warns, escape, s.lines, offsets);
+        return out.length();
+    }
+
+    private String toWylieString(String str, WarningSink warns, boolean escape, OffsetMap offsets) {
         StringBuilder out = new StringBuilder();
-        int line = 1;
+        if (offsets != null)
+            offsets.clear();
+        toWylieChunk(str, new Output().to(out), warns, escape, new int[] { 1, 0 }, offsets);
+        return out.toString();
+    }
+
+    /**
+     * Converts from Unicode strings to ALA-LC romanization (NFKD, lower case), see
+     * toAlalc(String, boolean, List).
+     * 
+     * @param str
+     *            the Unicode string to be converted
+     * @return the corresponding ALA-LC string
+     */
+    public String toAlalc(String str) {
+        return toAlalc(str, true, null);
+    }
+
+    /**
+     * Converts from Unicode strings to ALA-LC romanization (NFKD, lower case),
+     * with structured warnings. The result is the same as
+     * <code>TransConverter.ewtsToAlalc(toWylie(str, escape, warnings), true)</code>,
+     * but the EWTS is only written to a buffer of the thread.
+     * 
+     * @param str
+     *            the Unicode string to be converted
+     * @param escape
+     *            whether to escape non-tibetan characters in the EWTS (the
+     *            brackets and backslashes are then removed from the ALA-LC)
+     * @param warnings
+     *            the warning list that will be filled, or null
+     * @return the corresponding ALA-LC string
+     */
+    public String toAlalc(String str, boolean escape, List<Warning> warnings) {
+        final Scratch s = Scratch.acquire();
+        try {
+            toWylieInto(str, s.output.to(s.converted), structuredSink(warnings), escape, null, s);
+            s.normalizer.normalize(s.converted, null, false, true, false, s.normalized, null);
+            final StringBuilder out = new StringBuilder(s.normalized.length() + 16);
+            TransConverter.ewtsToAlalc(s.normalized, out);
+            return out.toString();
+        } finally {
+            s.release();
+        }
+    }
+
+    /**
+     * Converts a stream from Unicode to EWTS, chunk by chunk, with the same
+     * output and warnings as converting the whole text at once. Chunks end at
+     * newlines or tseks, so memory use does not depend on the size of the input
+     * (unless it has very long lines made of something else than tsekbars).
+     * 
+     * @param in
+     *            the stream to convert
+     * @param out
+     *            where to write the converted text
+     * @param warns
+     *            the warning list to fill
+     * @param escape
+     *            if non-Tibetan text should be escaped in [comments]
+     * @throws IOException
+     *             if reading or writing fails
+     */
+    public void toWylie(final Reader in, final Appendable out, final List<String> warns, final boolean escape)
+            throws IOException {
+        toWylie(in, out, warns, escape, STREAM_BUFFER_SIZE);
+    }
+
+    void toWylie(final Reader in, final Appendable out, final List<String> warns, final boolean escape,
+            final int bufferSize) throws IOException {
+        toWylie(in, out, sink(warns), escape, bufferSize);
+    }
+
+    // same with the warnings going to sink, null if nobody listens to them
+    void toWylie(final Reader in, final Appendable out, final WarningSink sink, final boolean escape,
+            final int bufferSize) throws IOException {
+        final ChunkReader chunks = new ChunkReader(in, bufferSize, true);
+        final int[] line = { 1, 0 };
+        final Output output = new Output().to(out);
+        String chunk;
+        while ((chunk = chunks.next()) != null) {
+            try {
+                toWylieChunk(chunk, output, sink, escape, line, null);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Converts a string from Unicode to EWTS, converting parts of it in
+     * parallel on the common fork/join pool, with the same output and warnings as
+     * toWylie(str, warns, escape). The string is cut at the same places as in the
+     * stream conversion, so this is only faster for long texts.
+     * 
+     * @param str
+     *            the Unicode string to be converted
+     * @param warns
+     *            the warning list that will be filled
+     * @param escape
+     *            if non-Tibetan text should be escaped in [comments]
+     * @return the corresponding EWTS string
+     */
+    public String toWylieParallel(final String str, final List<String> warns, final boolean escape) {
+        return toWylieParallel(str, warns, escape, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts a string from Unicode to EWTS, converting parts of it in
+     * parallel on a fork/join pool, with the same output and warnings as
+     * toWylie(str, warns, escape).
+     * 
+     * @param str
+     *            the Unicode string to be converted
+     * @param warns
+     *            the warning list that will be filled
+     * @param escape
+     *            if non-Tibetan text should be escaped in [comments]
+     * @param pool
+     *            the pool to convert on
+     * @return the corresponding EWTS string
+     */
+    public String toWylieParallel(final String str, final List<String> warns, final boolean escape,
+            final ForkJoinPool pool) {
+        return toWylieParallel(str, warns, escape, pool, parallelChunkSize(str, pool));
+    }
+
+    String toWylieParallel(final String str, final List<String> warns, final boolean escape, final ForkJoinPool pool,
+            final int chunkSize) {
+        final List<String> chunks = split(str, chunkSize, true);
+        // see toUnicodeParallel(), the chunks only depend on each other for the
+        // positions of the warnings
+        final WarningSink sink = sink(warns);
+        final boolean keep_warns = sink != null;
+        final List<ForkJoinTask<WylieChunk>> tasks = new ArrayList<ForkJoinTask<WylieChunk>>(chunks.size());
+        for (final String chunk : chunks) {
+            tasks.add(pool.submit(() -> {
+                final WylieChunk c = new WylieChunk();
+                final StringBuilder sb = new StringBuilder(chunk.length() * 2);
+                c.warns = keep_warns ? new ArrayList<Warning>() : null;
+                final int[] lines = { 1, 0 };
+                toWylieChunk(chunk, new Output().to(sb), keep_warns ? new WarningSink(c.warns, null, false) : null,
+                        escape, lines, null);
+                c.out = sb.toString();
+                c.newlines = lines[0] - 1;
+                c.chars = lines[1];
+                return c;
+            }));
+        }
+
+        final StringBuilder out = new StringBuilder(str.length() * 2);
+        int line = 1, offset = 0;
+        for (final ForkJoinTask<WylieChunk> task : tasks) {
+            final WylieChunk c = task.join();
+            out.append(c.out);
+            if (c.warns != null) {
+                for (final Warning w : c.warns)
+                    sink.add(w.shift(line - 1, offset));
+            }
+            line += c.newlines;
+            offset += c.chars;
+        }
+        return out.toString();
+    }
+
+    // a chunk converted by toWylieParallel()
+    private static final class WylieChunk {
+        String out;
+        List<Warning> warns;
+        int newlines;
+        // length of the chunk after the decomposition of deprecated vowel signs
+        int chars;
+    }
+
+    // converts the chunk of a text to EWTS, lines[0] is the line number at the
+    // start of the chunk and lines[1] the length of the previous chunks, updated for
+    // the next one. The offsets of the units are recorded in offsets, if any (whole
+    // texts only).
+    private void toWylieChunk(CharSequence str, Output out, WarningSink warns, boolean escape, int[] lines,
+            OffsetMap offsets) {
+        int line = lines[0];
+        final int base = lines[1];
 
         // globally search and replace some deprecated pre-composed Sanskrit vowels
-        str = str.replace("\u0f76", "\u0fb2\u0f80");
-        str = str.replace("\u0f77", "\u0fb2\u0f71\u0f80");
-        str = str.replace("\u0f78", "\u0fb3\u0f80");
-        str = str.replace("\u0f79", "\u0fb3\u0f71\u0f80");
-        str = str.replace("\u0f81", "\u0f71\u0f80");
-        str = str.replace("\u0F75", "\u0F71\u0F74");
-        str = str.replace("\u0F73", "\u0F71\u0F72");
+        if (hasDeprecatedVowels(str))
+            str = decomposeVowels(str, offsets);
 
         int i = 0;
         int len = str.length();
@@ -2272,16 +3117,20 @@ public class EwtsConverter {
         // iterate over the string, codepoint by codepoint
         ITER: while (i < len) {
             char t = str.charAt(i);
+            if (offsets != null)
+                offsets.add(offsets.source(i), out.length());
 
             // found tibetan script - handle one tsekbar
             if (tib_top(t) != null) {
-                ToWylieTsekbar tb = toWylieOneTsekbar(str, len, i);
+                ToWylieTsekbar tb = toWylieOneTsekbarCached(str, len, i);
                 out.append(tb.wylie);
-                i += tb.tokens_used;
-
-                for (String w : tb.warns) {
-                    warnl(warns, line, w);
+                if (tb.warns != null && warns != null) {
+                    final String text = str.subSequence(i, i + tb.tokens_used).toString();
+                    for (Warning w : tb.warns) {
+                        warns.add(w.at(line, text, base + i, base + i + tb.tokens_used));
+                    }
                 }
+                i += tb.tokens_used;
 
                 if (!escape)
                     i += handleSpaces(str, i, out);
@@ -2323,10 +3172,12 @@ public class EwtsConverter {
                 continue ITER;
             }
 
-            // anything else - pass along?
+            // anything else - pass along? (with the chars after it that are not
+            // special either)
             if (!escape) {
-                out.append(t);
-                i++;
+                final int end = plainRun(str, i + 1, len, false);
+                out.append(str, i, end);
+                i = end;
                 continue ITER;
             }
 
@@ -2337,14 +3188,15 @@ public class EwtsConverter {
                 i++;
 
                 // warn for tibetan codepoints that should appear only after a tib_top
-                if (tib_subjoined(t) != null || tib_vowel(t) != null || tib_final_wylie(t) != null) {
-                    warnl(warns, line, "Tibetan sign " + c + " needs a top symbol to attach to.");
+                if (warns != null && (tib_subjoined(t) != null || tib_vowel(t) != null || tib_final_wylie(t) != null)) {
+                    warns.add(new Warning(Warning.Code.SIGN_WITHOUT_TOP, c, null, line, String.valueOf(t), base + i - 1,
+                            base + i));
                 }
 
                 continue ITER;
             }
 
-            // ... or escape according to Converter:
+            // ... or escape according to EWTS:
             // put it in [comments], escaping [] sequences and closing at line ends
             out.append("[");
 
@@ -2355,13 +3207,16 @@ public class EwtsConverter {
                     out.append(t);
 
                     // unicode-escape anything in the tibetan plane (i.e characters not handled by
-                    // Converter)
+                    // EWTS)
                 } else if (t >= '\u0f00' && t <= '\u0fff') {
                     out.append(formatHex(t));
 
-                    // and just pass through anything else!
+                    // and just pass through anything else! (with the chars after it that
+                    // are not special either)
                 } else {
-                    out.append(t);
+                    final int end = plainRun(str, i + 1, len, true);
+                    out.append(str, i, end);
+                    i = end - 1;
                 }
 
                 if (++i >= len)
@@ -2372,7 +3227,74 @@ public class EwtsConverter {
             out.append("]");
         }
 
-        return out.toString();
+        if (offsets != null)
+            offsets.add(offsets.source(len), out.length());
+        lines[0] = line;
+        lines[1] = base + len;
+    }
+
+    // the end of the run of chars from i that toWylie() copies as they are: those
+    // outside of the Tibetan block that are not a space, a newline, a BOM or a
+    // zero-width space, or inside [comments] that are not a bracket or a newline
+    private static int plainRun(final CharSequence str, int i, final int len, final boolean comment) {
+        for (; i < len; i++) {
+            final char c = str.charAt(i);
+            // most of them are printable ASCII or Latin
+            if (c > ' ' && c < '\u0f00') {
+                if (c == '[' || c == ']') {
+                    if (comment)
+                        return i;
+                }
+                continue;
+            }
+            if ((c & 0xff00) == TIB_BASE || c == '\r' || c == '\n')
+                return i;
+            if (!comment && (c == ' ' || c == '\ufeff' || c == '\u200b'))
+                return i;
+        }
+        return len;
+    }
+
+    // str with the deprecated pre-composed Sanskrit vowels decomposed, recording
+    // where each char comes from in map, if any
+    private static String decomposeVowels(CharSequence str, OffsetMap map) {
+        final int len = str.length();
+        final StringBuilder sb = new StringBuilder(len + 16);
+        for (int i = 0; i < len; i++) {
+            final char c = str.charAt(i);
+            final String d;
+            switch (c) {
+            case '\u0f76': d = "\u0fb2\u0f80"; break;
+            case '\u0f77': d = "\u0fb2\u0f71\u0f80"; break;
+            case '\u0f78': d = "\u0fb3\u0f80"; break;
+            case '\u0f79': d = "\u0fb3\u0f71\u0f80"; break;
+            case '\u0f81': d = "\u0f71\u0f80"; break;
+            case '\u0f75': d = "\u0f71\u0f74"; break;
+            case '\u0f73': d = "\u0f71\u0f72"; break;
+            default: d = null;
+            }
+            if (map != null) {
+                for (int o = sb.length(), n = o + (d == null ? 1 : d.length()); o < n; o++)
+                    map.set(o, i);
+            }
+            if (d == null)
+                sb.append(c);
+            else
+                sb.append(d);
+        }
+        if (map != null)
+            map.end(sb.length(), len);
+        return sb.toString();
+    }
+
+    // the deprecated pre-composed Sanskrit vowels that toWylie() decomposes
+    private static boolean hasDeprecatedVowels(CharSequence str) {
+        for (int i = 0, len = str.length(); i < len; i++) {
+            final char c = str.charAt(i);
+            if (c == '\u0f73' || c == '\u0f75' || (c >= '\u0f76' && c <= '\u0f79') || c == '\u0f81')
+                return true;
+        }
+        return false;
     }
 
     // given a character, return a string like "\\uxxxx", with its code in hex
@@ -2394,7 +3316,7 @@ public class EwtsConverter {
     // this is abstracted out because in non-escaping mode, we only want to turn
     // spaces into _
     // when they come in the middle of Tibetan script.
-    private int handleSpaces(String str, int i, StringBuilder out) {
+    private int handleSpaces(CharSequence str, int i, Output out) {
         int found = 0;
         @SuppressWarnings("unused")
         int orig_i = i;
@@ -2421,7 +3343,7 @@ public class EwtsConverter {
     // for space-handling in escaping mode: is the next thing coming (after a number
     // of spaces)
     // some non-tibetan bit, within the same line?
-    private boolean followedByNonTibetan(String str, int i) {
+    private boolean followedByNonTibetan(CharSequence str, int i) {
         int len = str.length();
         while (i < len && str.charAt(i) == ' ') {
             i++;
@@ -2432,16 +3354,42 @@ public class EwtsConverter {
         return tib_top(t) == null && tib_other(t) == null && t != '\r' && t != '\n';
     }
 
-    // Convert Unicode to Converter: one tsekbar
-    private ToWylieTsekbar toWylieOneTsekbar(String str, int len, int i) {
+    // toWylieOneTsekbar() through the cache, if there is one. The result only
+    // depends on the signs of the tsekbar, whatever follows them.
+    private ToWylieTsekbar toWylieOneTsekbarCached(CharSequence str, int len, int i) {
+        if (this.cache == null)
+            return toWylieOneTsekbar(str, len, i);
+        int end = i + 1;
+        while (end < len && end - i < TsekbarCache.MAX_KEY_LENGTH) {
+            final char t = str.charAt(end);
+            if (tib_top(t) == null && tib_subjoined(t) == null && tib_vowel(t) == null && tib_final_wylie(t) == null)
+                break;
+            end++;
+        }
+        if (end - i >= TsekbarCache.MAX_KEY_LENGTH)
+            return toWylieOneTsekbar(str, len, i);
+        ToWylieTsekbar tb = (ToWylieTsekbar) this.cache.get(CACHE_TO_WYLIE, str, i, end);
+        if (tb == null) {
+            tb = toWylieOneTsekbar(str, len, i);
+            this.cache.put(CACHE_TO_WYLIE, str, i, end, tb);
+        }
+        return tb;
+    }
+
+    // Convert Unicode to EWTS: one tsekbar
+    private ToWylieTsekbar toWylieOneTsekbar(CharSequence str, int len, int i) {
         int orig_i = i;
-        ArrayList<String> warns = new ArrayList<String>();
+        List<Warning> warns = null;
         ArrayList<ToWylieStack> stacks = new ArrayList<ToWylieStack>();
 
         ITER: while (true) {
             ToWylieStack st = toWylieOneStack(str, len, i);
             stacks.add(st);
-            warns.addAll(st.warns);
+            if (st.warns != null) {
+                if (warns == null)
+                    warns = new ArrayList<Warning>(st.warns.size());
+                warns.addAll(st.warns);
+            }
             i += st.tokens_used;
 
             if (st.visarga)
@@ -2492,7 +3440,7 @@ public class EwtsConverter {
             Integer root = ambiguous_key(ztr);
 
             if (root == null) {
-                warns.add("Ambiguous syllable found: root consonant not known for \"" + ztr + "\".");
+                warns = addWarning(warns, Warning.Code.AMBIGUOUS_ROOT, ztr, null);
                 // make it up... (ex. "mgas" for ma, ga, sa)
                 root = 1;
             }
@@ -2521,8 +3469,8 @@ public class EwtsConverter {
         return ret;
     }
 
-    // Unicode to Converter: one stack at a time
-    private ToWylieStack toWylieOneStack(String str, int len, int i) {
+    // Unicode to EWTS: one stack at a time
+    private ToWylieStack toWylieOneStack(CharSequence str, int len, int i) {
         int orig_i = i;
         String ffinal = null, vowel = null, klass = null;
 
@@ -2551,9 +3499,9 @@ public class EwtsConverter {
 
                 // check for bad ordering
                 if (!st.finals.isEmpty()) {
-                    st.warns.add("Subjoined sign \"" + o + "\" found after final sign \"" + ffinal + "\".");
+                    st.warns = addWarning(st.warns, Warning.Code.SUBJOINED_AFTER_FINAL, o, ffinal);
                 } else if (!st.vowels.isEmpty()) {
-                    st.warns.add("Subjoined sign \"" + o + "\" found after vowel sign \"" + vowel + "\".");
+                    st.warns = addWarning(st.warns, Warning.Code.SUBJOINED_AFTER_VOWEL_SIGN, o, vowel);
                 }
 
             } else if ((o = tib_vowel(t)) != null) {
@@ -2564,7 +3512,7 @@ public class EwtsConverter {
 
                 // check for bad ordering
                 if (!st.finals.isEmpty()) {
-                    st.warns.add("Vowel sign \"" + o + "\" found after final sign \"" + ffinal + "\".");
+                    st.warns = addWarning(st.warns, Warning.Code.VOWEL_AFTER_FINAL, o, ffinal);
                 }
 
             } else if ((o = tib_final_wylie(t)) != null) {
@@ -2584,8 +3532,7 @@ public class EwtsConverter {
 
                     // check for invalid combinations
                     if (st.finals_found.containsKey(klass)) {
-                        st.warns.add("Final sign \"" + o + "\" should not combine with found after final sign \""
-                                + ffinal + "\".");
+                        st.warns = addWarning(st.warns, Warning.Code.FINAL_AFTER_FINAL, o, ffinal);
                     } else {
                         st.finals_found.put(klass, o);
                     }
@@ -2637,7 +3584,7 @@ public class EwtsConverter {
         return st;
     }
 
-    // Puts an analyzed stack together into Converter output, adding an implicit "a"
+    // Puts an analyzed stack together into EWTS output, adding an implicit "a"
     // if needed.
     private String putStackTogether(ToWylieStack st) {
         StringBuilder out = new StringBuilder();
@@ -2681,13 +3628,246 @@ public class EwtsConverter {
         PREFIX, MAIN, SUFF1, SUFF2, NONE
     }
 
+    // The stream of EWTS tokens of a string, read lazily by toUnicode().
+    // Each token is kept as its kind and start offset in two int arrays, which only
+    // need to hold the tokens that are still looked at (from the mark on), so the
+    // memory used does not depend on the size of the input.
+
+    private static final class TokenStream {
+        private CharSequence str;
+        private int len;
+
+        // offset of the next char to tokenize
+        private int pos = 0;
+
+        // index of the first token in the arrays, number of tokens in the arrays
+        private int base = 0, count = 0;
+
+        // tokens before this index will not be read again
+        private int mark = 0;
+
+        private int[] kinds = new int[64];
+        private int[] starts = new int[64];
+
+        TokenStream(CharSequence str) {
+            this.str = str;
+            this.len = str.length();
+        }
+
+        // starts over on another string, keeping the arrays
+        void reset(CharSequence str) {
+            this.str = str;
+            this.len = str.length();
+            this.pos = 0;
+            this.base = 0;
+            this.count = 0;
+            this.mark = 0;
+        }
+
+        // the kind of token i, TOK_END after the end of the input
+        int kind(int i) {
+            while (i - base >= count) {
+                if (!next())
+                    return TOK_END;
+            }
+            return kinds[i - base];
+        }
+
+        // the offset of token i in the string (the length of the string at the end)
+        int start(int i) {
+            return kind(i) == TOK_END ? len : starts[i - base];
+        }
+
+        // the text of token i (null at the end)
+        String text(int i) {
+            final int t = kind(i);
+            if (t == TOK_END)
+                return null;
+            final String n = name(t);
+            if (n != null)
+                return n;
+            return str.subSequence(starts[i - base], start(i + 1)).toString();
+        }
+
+        // the first char of token i
+        char firstChar(int i) {
+            return str.charAt(start(i));
+        }
+
+        // makes token i (that has been read) a single m_tok_char token going up to
+        // the next bracket or backslash, dropping the tokens read after it, if it
+        // is not one of them; returns its kind
+        int run(int i) {
+            final int k = i - base;
+            final int start = starts[k];
+            int end = start;
+            while (end < len) {
+                final char c = str.charAt(end);
+                if (c == '[' || c == ']' || c == '\\')
+                    break;
+                end++;
+            }
+            if (end == start)
+                return kinds[k];
+            kinds[k] = EwtsTables.m_tok_char;
+            count = k + 1;
+            pos = end;
+            return EwtsTables.m_tok_char;
+        }
+
+        // looks up the kinds of tokens [from, to) in a cache, they must have been read
+        Object cacheGet(TsekbarCache cache, int flags, int from, int to) {
+            return cache.get(flags, kinds, from - base, to - base);
+        }
+
+        // stores the kinds of tokens [from, to) in a cache, they must have been read
+        void cachePut(TsekbarCache cache, int flags, int from, int to, Object value) {
+            cache.put(flags, kinds, from - base, to - base, value);
+        }
+
+        // signals that tokens before i will not be read anymore
+        void mark(int i) {
+            mark = i;
+        }
+
+        // tokenizes one more token, returns false at the end of the string
+        private boolean next() {
+            if (pos >= len)
+                return false;
+            if (count == kinds.length) {
+                final int drop = mark - base;
+                if (drop > 0) {
+                    System.arraycopy(kinds, drop, kinds, 0, count - drop);
+                    System.arraycopy(starts, drop, starts, 0, count - drop);
+                    base = mark;
+                    count -= drop;
+                } else {
+                    kinds = Arrays.copyOf(kinds, count * 2);
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+            }
+            starts[count] = pos;
+            final char c = str.charAt(pos);
+
+            // things starting with backslash are special
+            if (c == '\\') {
+                if (pos == len - 1) {
+                    kinds[count++] = EwtsTables.m_tok_escape; // a final \\ escapes nothing
+                    pos += 1;
+                    return true;
+                }
+                final char c2 = str.charAt(pos + 1);
+                if (c2 == 'u' && pos <= len - 6) {
+                    kinds[count++] = EwtsTables.m_tok_uescape; // \\uxxxx
+                    pos += 6;
+                } else if (c2 == 'U' && pos <= len - 10) {
+                    kinds[count++] = EwtsTables.m_tok_uescape; // \\Uxxxxxxxx
+                    pos += 10;
+                } else {
+                    kinds[count++] = EwtsTables.m_tok_escape; // \\x
+                    pos += 2;
+                }
+                return true;
+            }
+
+            // walk the automaton as far as it goes, keeping the longest token found
+            int tok = TOK_END;
+            int tokEnd = pos + 1;
+            int state = 0;
+            for (int j = pos; j < len; j++) {
+                final char cj = str.charAt(j);
+                if (cj >= 0x80)
+                    break;
+                state = EwtsTables.m_token_next[(state << 7) | cj];
+                if (state == 0)
+                    break;
+                if (EwtsTables.m_token_accept[state] != null) {
+                    tok = state;
+                    tokEnd = j + 1;
+                }
+            }
+
+            // otherwise just take one (non-ASCII) char
+            kinds[count++] = tok != TOK_END ? tok : EwtsTables.m_tok_char;
+            pos = tokEnd;
+            return true;
+        }
+    }
+
+    // Reads a stream in chunks that can be converted one after the other with the
+    // same result as the whole text: no token or tsekbar spans two chunks, and the
+    // normalizations do not look across chunk boundaries. A chunk ends:
+    // - for EWTS input: after a newline, or at a space between two lowercase
+    // letters and before another one (as in "pa bsgrubs"), except after q and x
+    // that the normalizations can turn into something else. Escapes can still span
+    // two chunks, toUnicode() checks that.
+    // - for Unicode input: after a newline, or after a tsek followed by a consonant
+    // The buffer grows when it has no such boundary.
+
+    private final class ChunkReader {
+        private final Reader in;
+        private final boolean unicode;
+        private char[] buf;
+        // number of chars in the buffer
+        private int len = 0;
+        private boolean eof = false;
+
+        ChunkReader(Reader in, int bufferSize, boolean unicode) {
+            this.in = in;
+            this.buf = new char[Math.max(bufferSize, 16)];
+            this.unicode = unicode;
+        }
+
+        // the next chunk, null at the end of the stream
+        String next() throws IOException {
+            while (true) {
+                while (!eof && len < buf.length) {
+                    final int n = in.read(buf, len, buf.length - len);
+                    if (n < 0)
+                        eof = true;
+                    else
+                        len += n;
+                }
+                if (eof) {
+                    if (len == 0)
+                        return null;
+                    return take(len);
+                }
+                for (int p = len; p > 0; p--) {
+                    if (unicode ? isUnicodeBoundary(p) : isEwtsBoundary(p))
+                        return take(p);
+                }
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+        }
+
+        private String take(int p) {
+            final String res = new String(buf, 0, p);
+            System.arraycopy(buf, p, buf, 0, len - p);
+            len -= p;
+            return res;
+        }
+
+        private boolean isEwtsBoundary(int p) {
+            if (buf[p - 1] == '\n')
+                return true;
+            return p >= 2 && p + 1 < len && isLowerAscii(buf[p - 2]) && buf[p - 2] != 'q' && buf[p - 2] != 'x'
+                    && buf[p - 1] == ' ' && isLowerAscii(buf[p]) && isLowerAscii(buf[p + 1]);
+        }
+
+        private boolean isUnicodeBoundary(int p) {
+            return buf[p - 1] == '\n' || (buf[p - 1] == '\u0f0b' && p < len && tib_top(buf[p]) != null);
+        }
+    }
+
+    private static boolean isLowerAscii(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
     // A simple class to encapsulate the return value of toUnicodeOneStack.
     // Quick and dirty and not particularly OO.
 
     private static class WylieStack {
-        // the converted unicode string
-        public String uni_string;
-
         // how many tokens from the stream were used
         public int tokens_used;
 
@@ -2697,8 +3877,8 @@ public class EwtsConverter {
         // did we find a single consonant with an "a"? if so which one
         public String single_cons_a;
 
-        // list of warnings
-        public ArrayList<String> warns;
+        // list of warnings, null if there are none
+        public List<Warning> warns;
 
         // found a visarga?
         public boolean visarga;
@@ -2714,12 +3894,12 @@ public class EwtsConverter {
         // how many tokens from the stream were used
         public int tokens_used;
 
-        // list of warnings
-        public ArrayList<String> warns;
+        // list of warnings, null if there are none
+        public List<Warning> warns;
     }
 
     // A simple class to encapsulate an analyzed tibetan stack, while
-    // converting Unicode to Converter.
+    // converting Unicode to EWTS.
 
     private static class ToWylieStack {
         // top symbol
@@ -2756,8 +3936,8 @@ public class EwtsConverter {
         // how many tokens from the stream were used
         public int tokens_used;
 
-        // list of warnings
-        public ArrayList<String> warns;
+        // list of warnings, null if there are none
+        public List<Warning> warns;
 
         // constructor - initialize a few arrays
         public ToWylieStack() {
@@ -2765,7 +3945,6 @@ public class EwtsConverter {
             this.vowels = new LinkedList<String>();
             this.finals = new ArrayList<String>();
             this.finals_found = new HashMap<String, String>();
-            this.warns = new ArrayList<String>();
         }
     }
 
@@ -2779,7 +3958,7 @@ public class EwtsConverter {
         // how many tokens from the stream were used
         public int tokens_used;
 
-        // list of warnings
-        public ArrayList<String> warns;
+        // list of warnings, null if there are none
+        public List<Warning> warns;
     }
 }
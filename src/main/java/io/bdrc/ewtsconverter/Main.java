@@ -0,0 +1,166 @@
+package io.bdrc.ewtsconverter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Command line converter, from the standard input to the standard output (in
+ * UTF-8):
+ *
+ * <pre>
+ * java -jar ewts-converter.jar [options] &lt; input &gt; output
+ * </pre>
+ *
+ * EWTS (and the other modes of EwtsConverter) to Unicode and Unicode to EWTS
+ * are converted as streams, the conversions of TransConverter line by line. It
+ * is also built as a native executable (see the native profile of the pom), for
+ * scripts that run it many times.
+ *
+ * @author Buddhist Digital Resource Center (BDRC)
+ */
+public final class Main {
+
+    private static final String USAGE = "usage: ewts-converter [options] < input > output\n" //
+            + "\n" //
+            + "  -f, --from SCHEME   ewts (default), wylie, dts, dwts, alalc, acip or unicode\n" //
+            + "  -t, --to SCHEME     unicode (default, or ewts from unicode), ewts or alalc\n" //
+            + "  -s, --sloppy        fix common EWTS errors\n" //
+            + "  -l, --lenient       normalize EWTS for lenient search (to Unicode)\n" //
+            + "  --no-escape         do not escape non-Tibetan text in [comments] (to EWTS)\n" //
+            + "  --no-check          no warnings for illegal consonant sequences\n" //
+            + "  --no-check-strict   do not check the whole stack\n" //
+            + "  --no-fix-spacing    keep the spaces after newlines, multiple tseks, etc.\n" //
+            + "  -w, --warnings      print the warnings to the standard error\n" //
+            + "  -h, --help          print this help\n" //
+            + "\n" //
+            + "From unicode the only target is ewts. The conversions of dts or alalc to ewts\n" //
+            + "and of ewts to alalc are made line by line, without checks.\n";
+
+    private Main() {
+    }
+
+    /**
+     * Converts the standard input to the standard output.
+     *
+     * @param args
+     *            the options, see --help
+     */
+    public static void main(String[] args) {
+        String from = "ewts", to = null;
+        boolean sloppy = false, lenient = false, escape = true, check = true, check_strict = true,
+                fix_spacing = true, warnings = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+            case "-f":
+            case "--from":
+            case "-t":
+            case "--to":
+                if (i + 1 == args.length)
+                    usage("missing argument after " + args[i]);
+                if (args[i].equals("-f") || args[i].equals("--from"))
+                    from = args[++i].toLowerCase(Locale.ROOT);
+                else
+                    to = args[++i].toLowerCase(Locale.ROOT);
+                break;
+            case "-s":
+            case "--sloppy":
+                sloppy = true;
+                break;
+            case "-l":
+            case "--lenient":
+                lenient = true;
+                break;
+            case "--no-escape":
+                escape = false;
+                break;
+            case "--no-check":
+                check = false;
+                check_strict = false;
+                break;
+            case "--no-check-strict":
+                check_strict = false;
+                break;
+            case "--no-fix-spacing":
+                fix_spacing = false;
+                break;
+            case "-w":
+            case "--warnings":
+                warnings = true;
+                break;
+            case "-h":
+            case "--help":
+                System.out.print(USAGE);
+                return;
+            default:
+                usage("unknown option " + args[i]);
+            }
+        }
+        if (to == null)
+            to = from.equals("unicode") ? "ewts" : "unicode";
+
+        final Reader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        // the warnings are printed as they come, not kept during the conversion
+        final EwtsConverter.WarningSink warns = warnings ? new EwtsConverter.WarningSink(null, null, System.err)
+                : null;
+        try {
+            if (to.equals("unicode") && !from.equals("unicode")) {
+                final EwtsConverter.Mode mode = mode(from);
+                new EwtsConverter(check, check_strict, false, fix_spacing, mode).toUnicode(in, out, warns, sloppy,
+                        lenient, EwtsConverter.STREAM_BUFFER_SIZE);
+            } else if (from.equals("unicode") && to.equals("ewts")) {
+                new EwtsConverter(check, check_strict, false, fix_spacing).toWylie(in, out, warns, escape,
+                        EwtsConverter.STREAM_BUFFER_SIZE);
+            } else if (from.equals("dts") && to.equals("ewts")) {
+                convertLines(in, out, 0, sloppy);
+            } else if (from.equals("alalc") && to.equals("ewts")) {
+                convertLines(in, out, 1, sloppy);
+            } else if (from.equals("ewts") && to.equals("alalc")) {
+                convertLines(in, out, 2, sloppy);
+            } else {
+                usage("cannot convert " + from + " to " + to);
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("ewts-converter: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static EwtsConverter.Mode mode(String from) {
+        for (final EwtsConverter.Mode mode : EwtsConverter.Mode.values())
+            if (mode.name().equalsIgnoreCase(from))
+                return mode;
+        usage("unknown scheme " + from);
+        return null;
+    }
+
+    // the conversions of TransConverter: 0 for DTS to EWTS, 1 for ALA-LC to EWTS
+    // and 2 for EWTS to ALA-LC
+    private static void convertLines(Reader in, Writer out, int conversion, boolean sloppy) throws IOException {
+        final BufferedReader lines = (BufferedReader) in;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (conversion == 0)
+                out.write(TransConverter.dtsToEwts(line));
+            else if (conversion == 1)
+                out.write(TransConverter.alalcToEwts(line));
+            else
+                out.write(TransConverter.ewtsToAlalc(line, sloppy));
+            out.write('\n');
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println("ewts-converter: " + error);
+        System.err.print(USAGE);
+        System.exit(2);
+    }
+}
@@ -0,0 +1,175 @@
+package io.bdrc.ewtsconverter;
+
+import java.util.Arrays;
+
+/**
+ * The correspondence between the offsets of the input and of the output of a
+ * conversion, filled by the toUnicode() and toWylie() functions that take one,
+ * for instance to highlight in the original text the hits of a search made on
+ * the converted text.
+ *
+ * The map is a list of pairs of offsets, one in the input (source) and one in
+ * the output (target), recorded at the start of the tsekbars, punctuation
+ * signs and other units of the conversion, and at the end of the text. Like
+ * the corrections of a Lucene CharFilter, a pair is only recorded where the
+ * difference between the two offsets changes. The source offsets are those of
+ * the text given to the conversion, before the sloppy, lenient, DTS or ALA-LC
+ * normalizations. A map can be reused for the next conversion, it only
+ * allocates when it needs to grow.
+ *
+ * @author Buddhist Digital Resource Center (BDRC)
+ */
+public final class OffsetMap {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] sources = new int[16];
+    private int[] targets = new int[16];
+    private int size = 0;
+
+    // the source offset of each char of the text being normalized (when
+    // normalized is true, otherwise it is the index plus shift), and of the
+    // text being built from it
+    private int[] norm = EMPTY, next = EMPTY;
+    private boolean normalized = false;
+    private int shift = 0;
+
+    /**
+     * Creates an empty map.
+     */
+    public OffsetMap() {
+    }
+
+    /**
+     * Removes all the pairs of offsets.
+     */
+    public void clear() {
+        size = 0;
+        normalized = false;
+        shift = 0;
+    }
+
+    /**
+     * @return the number of pairs of offsets
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i
+     *            the index of a pair, from 0
+     * @return the offset in the input of pair i
+     */
+    public int sourceOffset(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        return sources[i];
+    }
+
+    /**
+     * @param i
+     *            the index of a pair, from 0
+     * @return the offset in the output of pair i
+     */
+    public int targetOffset(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        return targets[i];
+    }
+
+    /**
+     * Maps an offset of the output to the input. Inside a unit of the
+     * conversion the offset moves with the output, without going beyond the
+     * start of the next unit.
+     *
+     * @param targetOffset
+     *            an offset in the output
+     * @return the corresponding offset in the input
+     */
+    public int toSource(int targetOffset) {
+        return map(targets, sources, targetOffset);
+    }
+
+    /**
+     * Maps an offset of the input to the output, the same way.
+     *
+     * @param sourceOffset
+     *            an offset in the input
+     * @return the corresponding offset in the output
+     */
+    public int toTarget(int sourceOffset) {
+        return map(sources, targets, sourceOffset);
+    }
+
+    private int map(final int[] from, final int[] to, final int offset) {
+        if (size == 0)
+            return offset;
+        int k = Arrays.binarySearch(from, 0, size, offset);
+        if (k < 0) {
+            k = -k - 2;
+            if (k < 0)
+                return to[0];
+        } else {
+            // the last pair at this offset
+            while (k + 1 < size && from[k + 1] == offset)
+                k++;
+        }
+        final int res = to[k] + offset - from[k];
+        return k + 1 < size ? Math.min(res, to[k + 1]) : res;
+    }
+
+    // records that the output at target comes from the input at source
+    void add(final int source, final int target) {
+        if (size > 0) {
+            final int last = size - 1;
+            // a unit that wrote nothing: the output starts with the next one
+            if (targets[last] == target) {
+                if (last > 0 && sources[last - 1] - targets[last - 1] == source - target)
+                    size--;
+                else
+                    sources[last] = source;
+                return;
+            }
+            if (sources[last] - targets[last] == source - target)
+                return;
+        }
+        if (size == sources.length) {
+            sources = Arrays.copyOf(sources, size * 2);
+            targets = Arrays.copyOf(targets, size * 2);
+        }
+        sources[size] = source;
+        targets[size] = target;
+        size++;
+    }
+
+    // the offset in the input of a char of the normalized text
+    int source(final int i) {
+        return normalized ? norm[i] : i + shift;
+    }
+
+    // the normalized text loses its first n chars
+    void drop(final int n, final int length) {
+        if (!normalized) {
+            shift += n;
+            return;
+        }
+        System.arraycopy(norm, n, norm, 0, length - n + 1);
+    }
+
+    // a normalization step: char o of its output comes from char i of its input
+    void set(final int o, final int i) {
+        if (o >= next.length)
+            next = Arrays.copyOf(next, Math.max(16, Math.max(o + 1, next.length * 2)));
+        next[o] = source(i);
+    }
+
+    // the end of a normalization step, with the lengths of its output and input
+    void end(final int outLength, final int inLength) {
+        set(outLength, inLength);
+        final int[] tmp = norm;
+        norm = next;
+        next = tmp;
+        normalized = true;
+    }
+}
@@ -0,0 +1,250 @@
+package io.bdrc.ewtsconverter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replaces a fixed list of strings by other strings in one pass. The input is
+ * scanned from left to right and at each position either the first string of
+ * the list found there is replaced (same result as StringUtils.replaceEach()),
+ * or the longest one.
+ *
+ * @author Buddhist Digital Resource Center (BDRC)
+ */
+final class Replacer {
+
+    private final String[] from;
+    private final String[] to;
+    private final boolean longest;
+
+    // indexes of the strings starting with each ASCII char, in list order
+    private final int[][] ascii = new int[0x80][];
+    // same for the other chars, looked up by binary search in nonAsciiFirsts
+    private final char[] nonAsciiFirsts;
+    private final int[][] nonAscii;
+
+    Replacer(String[] from, String[] to, boolean longest) {
+        // copies, so that the replacer cannot change once built
+        this.from = from.clone();
+        this.to = to.clone();
+        this.longest = longest;
+        final List<Character> firsts = new ArrayList<Character>();
+        for (final String f : from) {
+            final char c = f.charAt(0);
+            if (c >= 0x80 && !firsts.contains(c))
+                firsts.add(c);
+        }
+        nonAsciiFirsts = new char[firsts.size()];
+        for (int i = 0; i < nonAsciiFirsts.length; i++)
+            nonAsciiFirsts[i] = firsts.get(i);
+        Arrays.sort(nonAsciiFirsts);
+        nonAscii = new int[nonAsciiFirsts.length][];
+        for (int k = 0; k < from.length; k++) {
+            final char c = from[k].charAt(0);
+            if (c < 0x80) {
+                ascii[c] = append(ascii[c], k);
+            } else {
+                final int i = Arrays.binarySearch(nonAsciiFirsts, c);
+                nonAscii[i] = append(nonAscii[i], k);
+            }
+        }
+    }
+
+    Replacer(List<String> from, List<String> to, boolean longest) {
+        this(from.toArray(new String[0]), to.toArray(new String[0]), longest);
+    }
+
+    private static int[] append(int[] a, int k) {
+        if (a == null)
+            return new int[] { k };
+        final int[] res = Arrays.copyOf(a, a.length + 1);
+        res[a.length] = k;
+        return res;
+    }
+
+    // the result of match() when the text read so far might go on
+    static final int WAIT = -2;
+
+    // the index of the first (or longest) string of the list found at s[i], or -1
+    int match(CharSequence s, int i) {
+        return match(s, i, s.length(), false);
+    }
+
+    // same on s[i..end), where more tells that the text goes on after end: WAIT if
+    // the answer depends on the chars that follow
+    int match(CharSequence s, int i, int end, boolean more) {
+        final int[] candidates = candidates(s.charAt(i));
+        if (candidates == null)
+            return -1;
+        int res = -1;
+        boolean wait = false;
+        CANDIDATES: for (final int k : candidates) {
+            final String f = from[k];
+            final int flen = f.length();
+            if (i + flen > end) {
+                // a longer or earlier string that the next chars could complete
+                if (!more)
+                    continue;
+                for (int j = 1; i + j < end; j++) {
+                    if (s.charAt(i + j) != f.charAt(j))
+                        continue CANDIDATES;
+                }
+                if (!longest)
+                    return WAIT;
+                wait = true;
+                continue;
+            }
+            if (res >= 0 && flen <= from[res].length())
+                continue;
+            for (int j = 1; j < flen; j++) {
+                if (s.charAt(i + j) != f.charAt(j))
+                    continue CANDIDATES;
+            }
+            if (!longest)
+                return k;
+            res = k;
+        }
+        return wait ? WAIT : res;
+    }
+
+    // whether some string of the list starts with c
+    boolean starts(char c) {
+        return candidates(c) != null;
+    }
+
+    // the indexes of the strings starting with c, or null
+    private int[] candidates(char c) {
+        if (c < 0x80)
+            return ascii[c];
+        final int j = Arrays.binarySearch(nonAsciiFirsts, c);
+        return j < 0 ? null : nonAscii[j];
+    }
+
+    // the length of string k of the list
+    int fromLength(int k) {
+        return from[k].length();
+    }
+
+    // the replacement of string k of the list
+    String to(int k) {
+        return to[k];
+    }
+
+    // replaces all the strings of the list found in s
+    String replace(CharSequence s) {
+        return replace(s, null);
+    }
+
+    // same, recording where each char of the result comes from in map, if any
+    String replace(CharSequence s, OffsetMap map) {
+        final int len = s.length();
+        final StringBuilder out = new StringBuilder(len + 16);
+        int i = 0;
+        while (i < len) {
+            final int k = match(s, i);
+            if (k < 0) {
+                if (map != null)
+                    map.set(out.length(), i);
+                out.append(s.charAt(i));
+                i++;
+            } else {
+                if (map != null) {
+                    for (int o = out.length(), n = o + to[k].length(); o < n; o++)
+                        map.set(o, i);
+                }
+                out.append(to[k]);
+                i += from[k].length();
+            }
+        }
+        if (map != null)
+            map.end(out.length(), len);
+        return out.toString();
+    }
+
+    // whether String.toLowerCase() lower cases str char by char, like
+    // toLowerCase(char) below (it does not for some locales and chars)
+    static boolean lowerCasesByChar(String str) {
+        if (!localeLowerCasesByChar())
+            return false;
+        for (int i = 0; i < str.length(); i++) {
+            if (!lowerCasesByChar(str.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    // whether the lower casing of the default locale can be char by char
+    static boolean localeLowerCasesByChar() {
+        final String lang = Locale.getDefault().getLanguage();
+        return !lang.equals("tr") && !lang.equals("az") && !lang.equals("lt");
+    }
+
+    // whether String.toLowerCase() lower cases c like toLowerCase(char), in any
+    // context, in the other locales
+    static boolean lowerCasesByChar(char c) {
+        return c < 0x80 || !(Character.isSurrogate(c) || c == '\u0130' || c == '\u03a3');
+    }
+
+    static char toLowerCase(char c) {
+        if (c < 0x80)
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        return Character.toLowerCase(c);
+    }
+
+    // str lower cased (see lowerCasesByChar()), without copying it
+    static CharSequence lowerCase(String str) {
+        return lowerCase(str, null);
+    }
+
+    // same, recording in map where the chars of the result come from when lower
+    // casing changes the length of str
+    static CharSequence lowerCase(String str, OffsetMap map) {
+        if (!lowerCasesByChar(str)) {
+            final String res = str.toLowerCase();
+            if (map != null && res.length() != str.length())
+                mapLowerCase(str, res.length(), map);
+            return res;
+        }
+        return new CharSequence() {
+            @Override
+            public int length() {
+                return str.length();
+            }
+
+            @Override
+            public char charAt(int i) {
+                return toLowerCase(str.charAt(i));
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return str.subSequence(start, end).toString().toLowerCase();
+            }
+
+            @Override
+            public String toString() {
+                return str.toLowerCase();
+            }
+        };
+    }
+
+    // the chars of str.toLowerCase() (of length res) mapped to the code points of
+    // str, lower cased one by one (the context of final sigmas does not change
+    // their length)
+    static void mapLowerCase(String str, int res, OffsetMap map) {
+        final int len = str.length();
+        int o = 0, i = 0;
+        while (i < len && o < res) {
+            final int c = str.codePointAt(i);
+            final int n = new String(Character.toChars(c)).toLowerCase().length();
+            for (int j = 0; j < n && o < res; j++)
+                map.set(o++, i);
+            i += Character.charCount(c);
+        }
+        while (o < res)
+            map.set(o++, len);
+        map.end(res, len);
+    }
+}
@@ -3,8 +3,6 @@ package io.bdrc.ewtsconverter;
 import java.util.Map;
 import java.util.TreeMap;
 
-import org.apache.commons.lang3.StringUtils;
-
 /*
  * This file is used to convert DTS and ALALC transliteration schemes to EWTS.
  *
@@ -30,31 +28,42 @@ import org.apache.commons.lang3.StringUtils;
  * @version 1.4.0
  */
 public class TransConverter {
-    public static String baseDts[];
-    public static String baseAlalc[];
-    public static String replAlalcToEwts[];
-    public static String replDtsToEwts[];
-    public static String baseEwts[];
-    public static String replEwtsToAlalc[];
-
     private static final int DTS = 0;
     private static final int ALALC = 1;
     private static final int BOTH = 2;
 
-    final static Map<String, String> replMapAlalcToEwts = new TreeMap<String, String>();
-    final static Map<String, String> replMapDtsToEwts = new TreeMap<String, String>();
-    final static Map<String, String> replMapEwtsToAlalc = new TreeMap<String, String>();
-
     private final static int NFD = 0;
     private final static int NFC = 1;
     private final static int ALWAYS_ALALC = 2;
     private final static int NEVER_ALALC = 3;
 
+    // the replacements, only written by init() during the initialization of the
+    // class
+    private final static Map<String, String> replMapAlalcToEwts = new TreeMap<String, String>();
+    private final static Map<String, String> replMapDtsToEwts = new TreeMap<String, String>();
+    private final static Map<String, String> replMapEwtsToAlalc = new TreeMap<String, String>();
+
     static {
         init();
     }
 
-    static void addMapping(final String target, final String ewts, final int targetType, final int toAlalc) {
+    // the maps above, compiled for leftmost-longest replacement. Each replacer is
+    // in a holder class that the JVM only initializes the first time its
+    // conversion is used. Replacers are immutable, so the conversions can run in
+    // any number of threads.
+    private static final class DtsToEwts {
+        private static final Replacer replacer = compile(replMapDtsToEwts);
+    }
+
+    private static final class AlalcToEwts {
+        private static final Replacer replacer = compile(replMapAlalcToEwts);
+    }
+
+    private static final class EwtsToAlalc {
+        private static final Replacer replacer = compile(replMapEwtsToAlalc);
+    }
+
+    private static void addMapping(final String target, final String ewts, final int targetType, final int toAlalc) {
         if (targetType == DTS || targetType == BOTH) {
             replMapDtsToEwts.put(target, ewts);
         }
@@ -66,7 +75,7 @@ public class TransConverter {
         }
     }
 
-    static void init() {
+    private static void init() {
         // we always handle NFC and NFD, that makes the list a bit cumbersome
         // addMapping("-", " ", BOTH, ALWAYS_ALALC);
         replMapDtsToEwts.put("-", " ");
@@ -139,10 +148,6 @@ public class TransConverter {
         replMapDtsToEwts.put("s\u030C", "sh");
         replMapDtsToEwts.put("ž", "zh");
         replMapDtsToEwts.put("z\u030C", "zh");
-        baseDts = replMapDtsToEwts.keySet().toArray(new String[0]);
-        replDtsToEwts = replMapDtsToEwts.values().toArray(new String[0]);
-        baseAlalc = replMapAlalcToEwts.keySet().toArray(new String[0]);
-        replAlalcToEwts = replMapAlalcToEwts.values().toArray(new String[0]);
         // Alalc doesn't like shad, nor any kind of punctuation
         replMapEwtsToAlalc.put("<<", "\"");
         replMapEwtsToAlalc.put(">>", "\"");
@@ -152,8 +157,20 @@ public class TransConverter {
         replMapEwtsToAlalc.put("t+s", "tʹs");
         replMapEwtsToAlalc.put("s+h", "sʹh");
         replMapEwtsToAlalc.put("n+g", "nʹg");
-        baseEwts = replMapEwtsToAlalc.keySet().toArray(new String[0]);
-        replEwtsToAlalc = replMapEwtsToAlalc.values().toArray(new String[0]);
+    }
+
+    // the replacers of dtsToEwts() and alalcToEwts(), for the single pass
+    // normalization of EwtsConverter
+    static Replacer dtsToEwtsReplacer() {
+        return DtsToEwts.replacer;
+    }
+
+    static Replacer alalcToEwtsReplacer() {
+        return AlalcToEwts.replacer;
+    }
+
+    private static Replacer compile(final Map<String, String> map) {
+        return new Replacer(map.keySet().toArray(new String[0]), map.values().toArray(new String[0]), true);
     }
 
     /**
@@ -164,8 +181,12 @@ public class TransConverter {
      * @return EWTS string
      */
     public static String dtsToEwts(String dtsString) {
-        dtsString = dtsString.toLowerCase();
-        return StringUtils.replaceEach(dtsString, baseDts, replDtsToEwts);
+        return dtsToEwts(dtsString, null);
+    }
+
+    // same, recording where each char of the result comes from in map, if any
+    static String dtsToEwts(String dtsString, OffsetMap map) {
+        return DtsToEwts.replacer.replace(Replacer.lowerCase(dtsString, map), map);
     }
 
     /**
@@ -176,8 +197,12 @@ public class TransConverter {
      * @return EWTS string
      */
     public static String alalcToEwts(String alalcStr) {
-        alalcStr = alalcStr.toLowerCase();
-        return StringUtils.replaceEach(alalcStr, baseAlalc, replAlalcToEwts);
+        return alalcToEwts(alalcStr, null);
+    }
+
+    // same, recording where each char of the result comes from in map, if any
+    static String alalcToEwts(String alalcStr, OffsetMap map) {
+        return AlalcToEwts.replacer.replace(Replacer.lowerCase(alalcStr, map), map);
     }
 
     /**
@@ -193,16 +218,117 @@ public class TransConverter {
         if (sloppy) {
             ewtsStr = EwtsConverter.normalizeSloppyWylie(ewtsStr);
         }
-        ewtsStr = StringUtils.replaceEach(ewtsStr, baseEwts, replEwtsToAlalc);
+        final StringBuilder out = new StringBuilder(ewtsStr.length() + 16);
+        ewtsToAlalc(ewtsStr, out);
+        return out.toString();
+    }
+
+    // same without the sloppy normalization, appending to out
+    static void ewtsToAlalc(final CharSequence ewtsStr, final StringBuilder out) {
+        // the lower casing of some locales depends on the chars around
+        if (!Replacer.localeLowerCasesByChar()) {
+            out.append(ewtsToAlalcByLocale(ewtsStr.toString()));
+            return;
+        }
+        // one pass doing the replacements, then on each char they produce: the
+        // dots between letters, the removal of the other chars, of the spaces at
+        // both ends, and the lower casing (only A-Z are left to lower case)
+        final Replacer replacer = EwtsToAlalc.replacer;
+        final int len = ewtsStr.length();
+        final int start = out.length();
+        // the previous char produced by the replacements, whether it is a letter
+        // already joined to a dot before it, whether it is a dot after a letter,
+        // waiting for the next char, and the spaces not written yet
+        char prev = 0;
+        boolean joined = false, dot = false;
+        int spaces = 0;
+        int i = 0;
+        while (i < len) {
+            final int k = replacer.match(ewtsStr, i);
+            final String to = k < 0 ? null : replacer.to(k);
+            final int n = k < 0 ? 1 : to.length();
+            for (int j = 0; j < n; j++) {
+                final char c = k < 0 ? ewtsStr.charAt(i) : to.charAt(j);
+                final boolean letter = isAsciiLetter(c);
+                if (dot) {
+                    dot = false;
+                    // we only want to replace dots with ʹ when they're between letters,
+                    // the other dots are removed
+                    if (letter) {
+                        for (; spaces > 0; spaces--)
+                            out.append(' ');
+                        out.append('ʹ').append(c >= 'a' ? c : (char) (c + 32));
+                        prev = c;
+                        joined = true;
+                        continue;
+                    }
+                }
+                if (c == '.' && !joined && isAsciiLetter(prev)) {
+                    dot = true;
+                } else if (c == ' ') {
+                    // in the case of "ng /", the "/" is removed but we'll have a spurious
+                    // space
+                    if (out.length() > start)
+                        spaces++;
+                } else if (isAlalc(c)) {
+                    for (; spaces > 0; spaces--)
+                        out.append(' ');
+                    // this will also lower case oddities like R and Y
+                    out.append(c >= 'A' && c <= 'Z' ? (char) (c + 32) : c);
+                }
+                prev = c;
+                joined = false;
+            }
+            i += k < 0 ? 1 : replacer.fromLength(k);
+        }
+    }
+
+    private static boolean isAsciiLetter(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    // the chars kept in ALA-LC, besides the spaces
+    private static boolean isAlalc(final char c) {
+        if (c < 0x80)
+            return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '"' || c == '`' || c == '(' || c == ')'
+                    || c == '-';
+        switch (c) {
+        case 'ʹ':
+        case 'ʼ':
+        case '\u0325':
+        case '\u0304':
+        case '\u0303':
+        case '\u0323':
+        case '\u0307':
+        case '\u0301':
+        case '\u0310':
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    // ewtsToAlalc() with the lower casing of the default locale
+    private static String ewtsToAlalcByLocale(String ewtsStr) {
+        ewtsStr = EwtsToAlalc.replacer.replace(ewtsStr);
         // we only want to replace dots with ʹ when they're between letters
         ewtsStr = ewtsStr.replaceAll("([a-zA-Z])\\.([a-zA-Z])", "$1ʹ$2");
         ewtsStr = ewtsStr.replaceAll("[^a-zA-Z0-9 \"ʹʼ`\u0325\u0304\u0303\u0323\u0307\u0301\u0310()\\-]", "");
         // in the case of "ng /", previous regexp will remove the "/" but we'll have a
         // spurious "-":
-        ewtsStr = StringUtils.strip(ewtsStr, " ");
-        // this will also lower case oddities like R and Y
-        ewtsStr = ewtsStr.toLowerCase();
-        return ewtsStr;
+        ewtsStr = stripSpaces(ewtsStr);
+        return ewtsStr.toLowerCase();
+    }
+
+    // removes the spaces at both ends of a string
+    private static String stripSpaces(String str) {
+        int start = 0;
+        int end = str.length();
+        while (start < end && str.charAt(start) == ' ')
+            start++;
+        while (end > start && str.charAt(end - 1) == ' ')
+            end--;
+        return str.substring(start, end);
     }
 
 }
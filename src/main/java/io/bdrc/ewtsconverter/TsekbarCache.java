@@ -0,0 +1,202 @@
+package io.bdrc.ewtsconverter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of converted tsekbars (syllables), in both directions, to be
+ * passed to the EwtsConverter constructor.
+ *
+ * Tibetan text is very repetitive at the syllable level, so most tsekbars can
+ * be converted by a simple lookup instead of a full analysis. A cache can be
+ * shared by any number of converters (with any options) and threads: it
+ * takes no lock and lookups do not allocate. It is organized in sets of two
+ * entries, a new entry replacing the least recently used entry of its set.
+ *
+ * @author Buddhist Digital Resource Center (BDRC)
+ */
+public final class TsekbarCache {
+
+    // tsekbars longer than that are not cached, they are most likely noise
+    static final int MAX_KEY_LENGTH = 32;
+
+    // An entry of the cache. Entries are never modified, so they can be read
+    // without synchronization (their fields are final).
+    private static final class Entry {
+        final int hash;
+        final int flags;
+        final char[] key;
+        final Object value;
+
+        Entry(int hash, int flags, char[] key, Object value) {
+            this.hash = hash;
+            this.flags = flags;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final Entry[] entries;
+    private final int sets;
+
+    // the most recently used entry (0 or 1) of each set
+    private final byte[] recent;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize
+     *            the maximum number of tsekbars in the cache
+     */
+    public TsekbarCache(int maxSize) {
+        if (maxSize < 2)
+            throw new IllegalArgumentException("maxSize must be at least 2");
+        this.sets = maxSize / 2;
+        this.entries = new Entry[this.sets * 2];
+        this.recent = new byte[this.sets];
+    }
+
+    /**
+     * @return the number of lookups that found their tsekbar in the cache
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that did not find their tsekbar in the cache
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of tsekbars in the cache
+     */
+    public int size() {
+        int res = 0;
+        for (final Entry e : entries) {
+            if (e != null)
+                res++;
+        }
+        return res;
+    }
+
+    /**
+     * @return the maximum number of tsekbars in the cache
+     */
+    public int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * Removes all the tsekbars from the cache and resets the counters.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length; i++)
+            entries[i] = null;
+        hits.reset();
+        misses.reset();
+    }
+
+    // the value stored for the key made of flags and k[from, to), or null
+    Object get(int flags, int[] k, int from, int to) {
+        final int hash = hash(flags, k, from, to);
+        final int set = set(hash);
+        for (int way = 0; way < 2; way++) {
+            final Entry e = entries[set * 2 + way];
+            if (e != null && e.hash == hash && e.flags == flags && sameKey(e.key, k, from, to)) {
+                recent[set] = (byte) way;
+                hits.increment();
+                return e.value;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    // the value stored for the key made of flags and s[from, to), or null
+    Object get(int flags, CharSequence s, int from, int to) {
+        final int hash = hash(flags, s, from, to);
+        final int set = set(hash);
+        for (int way = 0; way < 2; way++) {
+            final Entry e = entries[set * 2 + way];
+            if (e != null && e.hash == hash && e.flags == flags && sameKey(e.key, s, from, to)) {
+                recent[set] = (byte) way;
+                hits.increment();
+                return e.value;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(int flags, int[] k, int from, int to, Object value) {
+        final char[] key = new char[to - from];
+        for (int i = from; i < to; i++)
+            key[i - from] = (char) k[i];
+        store(new Entry(hash(flags, k, from, to), flags, key, value));
+    }
+
+    void put(int flags, CharSequence s, int from, int to, Object value) {
+        final char[] key = new char[to - from];
+        for (int i = from; i < to; i++)
+            key[i - from] = s.charAt(i);
+        store(new Entry(hash(flags, s, from, to), flags, key, value));
+    }
+
+    // stores an entry in the empty or least recently used slot of its set
+    private void store(final Entry e) {
+        final int set = set(e.hash);
+        int way;
+        if (entries[set * 2] == null) {
+            way = 0;
+        } else if (entries[set * 2 + 1] == null) {
+            way = 1;
+        } else {
+            way = 1 - recent[set];
+        }
+        entries[set * 2 + way] = e;
+        recent[set] = (byte) way;
+    }
+
+    private int set(int hash) {
+        return (hash & 0x7fffffff) % sets;
+    }
+
+    private static int hash(int flags, int[] k, int from, int to) {
+        int h = flags;
+        for (int i = from; i < to; i++)
+            h = 31 * h + (char) k[i];
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(int flags, CharSequence s, int from, int to) {
+        int h = flags;
+        for (int i = from; i < to; i++)
+            h = 31 * h + s.charAt(i);
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean sameKey(char[] key, int[] k, int from, int to) {
+        if (key.length != to - from)
+            return false;
+        for (int i = from; i < to; i++) {
+            if (key[i - from] != (char) k[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean sameKey(char[] key, CharSequence s, int from, int to) {
+        if (key.length != to - from)
+            return false;
+        for (int i = from; i < to; i++) {
+            if (key[i - from] != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,106 @@
+package io.bdrc.ewtsconverter;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes and encodes UTF-8 for the byte[] conversions, with the same result as
+ * new String(bytes, UTF_8) and String.getBytes(UTF_8). EWTS is ASCII and
+ * Tibetan is 3 bytes per char (E0 BC-BF xx), so the well-formed sequences of
+ * 1, 2 and 3 bytes are decoded here; the rest (4 bytes, malformed input) goes
+ * to the decoder of the JDK.
+ *
+ * @author Buddhist Digital Resource Center (BDRC)
+ */
+final class Utf8 {
+
+    private Utf8() {
+    }
+
+    // a decoder replacing malformed input, like the String constructor
+    static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    // decodes length bytes from src[offset] into dst, that must have room for
+    // length chars; returns the number of chars
+    static int decode(final byte[] src, final int offset, final int length, final char[] dst,
+            final CharsetDecoder decoder) {
+        final int end = offset + length;
+        int i = offset, o = 0;
+        while (i < end) {
+            final int b = src[i] & 0xff;
+            if (b < 0x80) {
+                dst[o++] = (char) b;
+                i++;
+                continue;
+            }
+            if (b >= 0xc2 && b <= 0xdf && i + 1 < end && isContinuation(src[i + 1])) {
+                dst[o++] = (char) (((b & 0x1f) << 6) | (src[i + 1] & 0x3f));
+                i += 2;
+                continue;
+            }
+            if (b >= 0xe0 && b <= 0xef && i + 2 < end) {
+                final int b1 = src[i + 1] & 0xff;
+                // no overlong forms and no surrogates
+                if (isContinuation(b1) && isContinuation(src[i + 2]) && (b != 0xe0 || b1 >= 0xa0)
+                        && (b != 0xed || b1 < 0xa0)) {
+                    dst[o++] = (char) (((b & 0x0f) << 12) | ((b1 & 0x3f) << 6) | (src[i + 2] & 0x3f));
+                    i += 3;
+                    continue;
+                }
+            }
+            // i is at the start of a sequence, the JDK decodes the rest as it would
+            // have decoded the whole
+            decoder.reset();
+            final CharBuffer out = CharBuffer.wrap(dst, o, dst.length - o);
+            decoder.decode(ByteBuffer.wrap(src, i, end - i), out, true);
+            decoder.flush(out);
+            return out.position();
+        }
+        return o;
+    }
+
+    private static boolean isContinuation(final int b) {
+        return (b & 0xc0) == 0x80;
+    }
+
+    // encodes c at dst[pos], before end (a char of the Basic Multilingual Plane
+    // that is not a surrogate); returns the position after it
+    static int encode(final char c, final byte[] dst, int pos, final int end) {
+        if (c < 0x80) {
+            room(end, pos, 1);
+            dst[pos++] = (byte) c;
+        } else if (c < 0x800) {
+            room(end, pos, 2);
+            dst[pos++] = (byte) (0xc0 | (c >> 6));
+            dst[pos++] = (byte) (0x80 | (c & 0x3f));
+        } else {
+            room(end, pos, 3);
+            dst[pos++] = (byte) (0xe0 | (c >> 12));
+            dst[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            dst[pos++] = (byte) (0x80 | (c & 0x3f));
+        }
+        return pos;
+    }
+
+    // same for the code point of a surrogate pair
+    static int encode(final int cp, final byte[] dst, int pos, final int end) {
+        room(end, pos, 4);
+        dst[pos++] = (byte) (0xf0 | (cp >> 18));
+        dst[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+        dst[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+        dst[pos++] = (byte) (0x80 | (cp & 0x3f));
+        return pos;
+    }
+
+    private static void room(final int end, final int pos, final int n) {
+        if (pos + n > end)
+            throw new BufferOverflowException();
+    }
+}
@@ -0,0 +1,67 @@
+package io.bdrc.ewtsconverter;
+
+import java.util.BitSet;
+
+/**
+ * The result of EwtsConverter.validate(): how many syllables (tsekbars) were
+ * checked, and which of them have warnings.
+ *
+ * @author Buddhist Digital Resource Center (BDRC)
+ */
+public final class Validation {
+
+    private final int syllables;
+    private final BitSet invalid;
+    private final boolean complete;
+
+    Validation(int syllables, BitSet invalid, boolean complete) {
+        this.syllables = syllables;
+        this.invalid = invalid;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the number of syllables checked
+     */
+    public int getSyllables() {
+        return syllables;
+    }
+
+    /**
+     * @return the number of syllables with warnings
+     */
+    public int getInvalidCount() {
+        return invalid.cardinality();
+    }
+
+    /**
+     * @return true if no syllable has warnings
+     */
+    public boolean isValid() {
+        return invalid.isEmpty();
+    }
+
+    /**
+     * @param syllable
+     *            the index of a syllable, from 0
+     * @return true if this syllable has no warnings
+     */
+    public boolean isValid(int syllable) {
+        return !invalid.get(syllable);
+    }
+
+    /**
+     * @return a copy of the set of the indexes of the syllables with warnings
+     */
+    public BitSet getInvalidSyllables() {
+        return (BitSet) invalid.clone();
+    }
+
+    /**
+     * @return false if the check stopped at the first syllable with warnings,
+     *         before the end of the string
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,242 @@
+package io.bdrc.ewtsconverter;
+
+/**
+ * A warning about the input of a conversion. Warnings are only created when
+ * someone listens to them, and their message is only formatted when read:
+ * toString() gives the same strings as the conversion functions that fill a
+ * list of strings.
+ *
+ * @author Buddhist Digital Resource Center (BDRC)
+ */
+public final class Warning {
+
+    /**
+     * The kinds of warnings.
+     */
+    public enum Code {
+        // EWTS to Unicode, about a tsekbar
+        /** A superscript over a letter it cannot be above. */
+        SUPERSCRIPT_NOT_ABOVE(true),
+        /** A subjoined letter under a letter it cannot be under. */
+        SUBJOINED_NOT_AFTER(true),
+        /** More than one "^" on the same stack. */
+        MULTIPLE_CARETS(true),
+        /** A "+" that no vowel or consonant follows. */
+        NOTHING_AFTER_PLUS(true),
+        /** A consonant subjoined after a vowel of the same stack. */
+        SUBJOINED_AFTER_VOWEL(true),
+        /** An a-chen subjoined after a vowel of the same stack. */
+        ACHEN_AFTER_VOWEL(true),
+        /** The same final sign twice on a stack. */
+        DUPLICATE_FINAL(true),
+        /** Two final signs that cannot go together on a stack. */
+        CONFLICTING_FINALS(true),
+        /** A stack of several consonants that does not end with a vowel. */
+        STACK_WITHOUT_VOWEL(true),
+        /** A prefix before a root letter it cannot precede. */
+        PREFIX_NOT_BEFORE(true),
+        /** A consonant that cannot be a prefix. */
+        INVALID_PREFIX(true),
+        /** A single consonant after a prefix, where a vowel is expected. */
+        VOWEL_EXPECTED(true),
+        /** A consonant that cannot be a suffix. */
+        INVALID_SUFFIX(true),
+        /** A second suffix after a suffix it cannot follow. */
+        SUFFIX2_NOT_AFTER(true),
+        /** A consonant that cannot be a second suffix. */
+        INVALID_SUFFIX2(true),
+        /** A consonant after the second suffix of a syllable. */
+        AFTER_SUFFIX2(true),
+        /** A syllable that ends with a prefix and no vowel. */
+        PREFIX_WITHOUT_VOWEL(true),
+        /** An ambiguous syllable that should probably be written otherwise to give its root letter. */
+        PROBABLE_SYLLABLE(true),
+        // EWTS to Unicode, other
+        /** A Unicode escape with an invalid hex code. */
+        INVALID_HEX(true),
+        /** A character that is not part of EWTS. */
+        UNEXPECTED_CHAR(false),
+        /** A [bracketed non-Tibetan text] that is not closed. */
+        UNFINISHED_COMMENT(false),
+        /** An input without any tsekbar or Tibetan punctuation. */
+        NO_TIBETAN(false),
+        /** An output that starts with a combining character. */
+        STARTS_WITH_COMBINING(false),
+        // Unicode to EWTS
+        /** A sign with no letter to attach to. */
+        SIGN_WITHOUT_TOP(false),
+        /** A syllable whose root letter cannot be known. */
+        AMBIGUOUS_ROOT(false),
+        /** A subjoined sign after a final sign. */
+        SUBJOINED_AFTER_FINAL(false),
+        /** A subjoined sign after a vowel sign. */
+        SUBJOINED_AFTER_VOWEL_SIGN(false),
+        /** A vowel sign after a final sign. */
+        VOWEL_AFTER_FINAL(false),
+        /** A final sign after another final sign. */
+        FINAL_AFTER_FINAL(false);
+
+        // if the message starts with the offending text
+        final boolean quotes_text;
+
+        Code(boolean quotes_text) {
+            this.quotes_text = quotes_text;
+        }
+    }
+
+    private final Code code;
+    // the parts of the message that depend on the input
+    private final String arg1, arg2;
+    private final int line;
+    private final String text;
+    private final int start, end;
+
+    // a warning about a tsekbar, without its position yet
+    Warning(Code code, String arg1, String arg2) {
+        this(code, arg1, arg2, 0, null, -1, -1);
+    }
+
+    Warning(Code code, String arg1, String arg2, int line, String text, int start, int end) {
+        this.code = code;
+        this.arg1 = arg1;
+        this.arg2 = arg2;
+        this.line = line;
+        this.text = text;
+        this.start = start;
+        this.end = end;
+    }
+
+    // the same warning about text, at [start, end) of line
+    Warning at(int line, String text, int start, int end) {
+        return new Warning(code, arg1, arg2, line, text, start, end);
+    }
+
+    // the same warning, lines and chars further in the text
+    Warning shift(int lines, int chars) {
+        if ((lines == 0 || line == 0) && (chars == 0 || start < 0))
+            return this;
+        return new Warning(code, arg1, arg2, line == 0 ? 0 : line + lines, text, start < 0 ? start : start + chars,
+                end < 0 ? end : end + chars);
+    }
+
+    /**
+     * @return the kind of warning
+     */
+    public Code getCode() {
+        return code;
+    }
+
+    /**
+     * @return the line of the input the warning is about, from 1, or 0 if it is
+     *         about the whole input
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the text the warning is about, or null if it is about the whole
+     *         input
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return the offset of the text the warning is about, or -1. Offsets are
+     *         counted in the input as it is converted, after the DTS or ALA-LC to
+     *         EWTS conversion and the sloppy or lenient normalizations (or after
+     *         the decomposition of deprecated vowel signs for Unicode input).
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the offset of the end of the text the warning is about, or -1
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the message of the warning, without its line and text
+     */
+    public String getMessage() {
+        switch (code) {
+        case SUPERSCRIPT_NOT_ABOVE:
+            return "Superscript \"" + arg1 + "\" does not occur above combination \"" + arg2 + "\".";
+        case SUBJOINED_NOT_AFTER:
+            return "Subjoined \"" + arg1 + "\" not expected after \"" + arg2 + "\".";
+        case MULTIPLE_CARETS:
+            return "Cannot have more than one \"^\" applied to the same stack.";
+        case NOTHING_AFTER_PLUS:
+            return "Expected vowel or consonant after \"+\".";
+        case SUBJOINED_AFTER_VOWEL:
+            return "Cannot subjoin consonant (" + arg1 + ") after vowel (" + arg2 + ") in same stack.";
+        case ACHEN_AFTER_VOWEL:
+            return "Cannot subjoin a-chen (a) after vowel (" + arg1 + ") in same stack.";
+        case DUPLICATE_FINAL:
+            return "Cannot have two \"" + arg1 + "\" applied to the same stack.";
+        case CONFLICTING_FINALS:
+            return "Cannot have \"" + arg1 + "\" and \"" + arg2 + "\" applied to the same stack.";
+        case STACK_WITHOUT_VOWEL:
+            return "Stack with multiple consonants should end with vowel.";
+        case PREFIX_NOT_BEFORE:
+            return "Prefix \"" + arg1 + "\" does not occur before \"" + arg2 + "\".";
+        case INVALID_PREFIX:
+            return "Invalid prefix consonant: \"" + arg1 + "\".";
+        case VOWEL_EXPECTED:
+            return "Expected vowel after \"" + arg1 + "\".";
+        case INVALID_SUFFIX:
+            return "Invalid suffix consonant: \"" + arg1 + "\".";
+        case SUFFIX2_NOT_AFTER:
+            return "Second suffix \"" + arg1 + "\" does not occur after \"" + arg2 + "\".";
+        case INVALID_SUFFIX2:
+            return "Invalid 2nd suffix consonant: \"" + arg1 + "\".";
+        case AFTER_SUFFIX2:
+            return "Cannot have another consonant \"" + arg1 + "\" after 2nd suffix.";
+        case PREFIX_WITHOUT_VOWEL:
+            return "Vowel expected after \"" + arg1 + "\".";
+        case PROBABLE_SYLLABLE:
+            return "Syllable should probably be \"" + (arg2 == null ? arg1 : arg1 + "a" + arg2) + "\".";
+        case INVALID_HEX:
+            return "invalid hex code.";
+        case UNEXPECTED_CHAR:
+            return "Unexpected character \"" + arg1 + "\".";
+        case UNFINISHED_COMMENT:
+            return "Unfinished [non-Converter stuff].";
+        case NO_TIBETAN:
+            return "No Tibetan characters found!";
+        case STARTS_WITH_COMBINING:
+            return "String starts with combining character '" + arg1 + "'";
+        case SIGN_WITHOUT_TOP:
+            return "Tibetan sign " + arg1 + " needs a top symbol to attach to.";
+        case AMBIGUOUS_ROOT:
+            return "Ambiguous syllable found: root consonant not known for \"" + arg1 + "\".";
+        case SUBJOINED_AFTER_FINAL:
+            return "Subjoined sign \"" + arg1 + "\" found after final sign \"" + arg2 + "\".";
+        case SUBJOINED_AFTER_VOWEL_SIGN:
+            return "Subjoined sign \"" + arg1 + "\" found after vowel sign \"" + arg2 + "\".";
+        case VOWEL_AFTER_FINAL:
+            return "Vowel sign \"" + arg1 + "\" found after final sign \"" + arg2 + "\".";
+        case FINAL_AFTER_FINAL:
+            return "Final sign \"" + arg1 + "\" should not combine with found after final sign \"" + arg2 + "\".";
+        default:
+            throw new IllegalStateException("unknown warning code " + code);
+        }
+    }
+
+    /**
+     * @return the line, the text (for some kinds of warnings) and the message
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        if (line > 0)
+            sb.append("line ").append(line).append(": ");
+        if (code.quotes_text)
+            sb.append('"').append(text).append("\": ");
+        return sb.append(getMessage()).toString();
+    }
+}
@@ -1,10 +1,26 @@
 package io.bdrc.ewtsconverter;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 
 public class ConversionTest {
@@ -41,6 +57,357 @@ public class ConversionTest {
         assertTrue(converter.toUnicode("mNyon mNges gTso rDza padma").equals("མཉོན་མངེས་གཙོ་རྫ་པདྨ"));
     }
 
+    @Test
+    public void textTokens() {
+        assertTrue(converter.toUnicode("dzhA -d+hi tsha").equals("ཛྷཱ་ཌྷི་ཚ"));
+        assertTrue(converter.toUnicode("ka\\u0f40 \\U00000f41").equals("ཀཀ་ཁ"));
+        assertTrue(converter.toUnicode("ka\r\nkha").equals("ཀ\r\nཁ"));
+        // runs of non-Tibetan text, with brackets and escapes
+        assertEquals("see [1] ཀ་ཀ", converter.toUnicode("[see \\[1\\] \\u0f40] ka"));
+        assertEquals("[see \\[1\\] ]ka_kha[, ok]", converter.toWylie("see [1] ཀ ཁ, ok"));
+        assertEquals("see [1] ka_kha, ok", converter.toWylie("see [1] ཀ ཁ, ok", null, false));
+    }
+
+    @Test
+    public void textLongInput() {
+        final StringBuilder in = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            in.append("bsgrubs pa'i [comment] ");
+            expected.append("བསྒྲུབས་པའི་comment་");
+        }
+        List<String> conversionWarnings = new ArrayList<String>();
+        assertTrue(toUnicode(in.toString(), conversionWarnings).equals(expected.toString()));
+        assertTrue(conversionWarnings.size() == 0);
+    }
+
+    @Test
+    public void textTsekbarCache() {
+        final TsekbarCache cache = new TsekbarCache(16);
+        final EwtsConverter cached = new EwtsConverter(true, false, false, true, EwtsConverter.Mode.EWTS, cache);
+        final EwtsConverter uncached = new EwtsConverter(true, false, false, true, EwtsConverter.Mode.EWTS);
+        final String in = "bsgrubs pa'i gsg g \\u0f40 g\\u0f40 g\u00e9 g \nbsgrubs pa'i gsg g \\u0f40 g\\u0f40 g\u00e9 g ";
+        for (int i = 0; i < 3; i++) {
+            final List<String> warns = new ArrayList<String>();
+            final List<String> expectedWarns = new ArrayList<String>();
+            assertTrue(cached.toUnicode(in, warns, true).equals(uncached.toUnicode(in, expectedWarns, true)));
+            assertTrue(warns.equals(expectedWarns));
+        }
+        assertTrue(cache.hits() > 0);
+        assertTrue(cache.size() <= cache.capacity());
+        cache.clear();
+        assertTrue(cache.size() == 0 && cache.hits() == 0 && cache.misses() == 0);
+    }
+
+    @Test
+    public void textTsekbarCacheToWylie() {
+        final TsekbarCache cache = new TsekbarCache(16);
+        final EwtsConverter cached = new EwtsConverter(true, true, false, true, EwtsConverter.Mode.EWTS, cache);
+        final String in = "བཀྲ་ཤིས་ བདེ་ལེགས། abc ཀ\nབཀྲ་ཤིས་ དཀས་ ཀཾི ཀཿཿ བཀྲ་ཤིས། ཀཾི";
+        final List<String> expectedWarns = new ArrayList<String>();
+        final String expected = converter.toWylie(in, expectedWarns, true);
+        for (int i = 0; i < 3; i++) {
+            final List<String> warns = new ArrayList<String>();
+            assertTrue(cached.toWylie(in, warns, true).equals(expected));
+            assertTrue(warns.equals(expectedWarns));
+        }
+        assertTrue(expectedWarns.size() > 0);
+        assertTrue(cache.hits() > cache.misses());
+    }
+
+    @Test
+    public void textStreams() throws IOException {
+        final String in = "  bsgrubs pa'i [com\nment] \\u0f40 kaH \r\n  bkra shis\n\nSha ba";
+        final String uni = converter.toUnicode(in);
+        for (int bufferSize = 1; bufferSize < 40; bufferSize++) {
+            final List<String> warns = new ArrayList<String>();
+            final List<String> expectedWarns = new ArrayList<String>();
+            final String expected = converter.toUnicode(in, expectedWarns, true, false);
+            final StringWriter out = new StringWriter();
+            converter.toUnicode(new StringReader(in), out, warns, true, false, bufferSize);
+            assertEquals(expected, out.toString());
+            assertEquals(expectedWarns, warns);
+
+            warns.clear();
+            expectedWarns.clear();
+            final String expectedWylie = converter.toWylie(uni, expectedWarns, true);
+            final StringWriter outWylie = new StringWriter();
+            converter.toWylie(new StringReader(uni), outWylie, warns, true, bufferSize);
+            assertEquals(expectedWylie, outWylie.toString());
+            assertEquals(expectedWarns, warns);
+        }
+    }
+
+    @Test
+    public void textParallel() {
+        final String in = "  bsgrubs pa'i [com\nment] \\u0f40 kaH \r\n  bkra shis\n\nSha ba\nkxa\n\n \\U0000\n0f40 ga";
+        final String uni = converter.toUnicode(in) + "\nཀཾི ཀཿཿ\n";
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        for (int chunkSize = 1; chunkSize < 40; chunkSize++) {
+            final List<String> warns = new ArrayList<String>();
+            final List<String> expectedWarns = new ArrayList<String>();
+            final String expected = converter.toUnicode(in, expectedWarns, true, false);
+            assertEquals(expected, converter.toUnicodeParallel(in, warns, true, false, pool, chunkSize));
+            assertEquals(expectedWarns, warns);
+
+            warns.clear();
+            expectedWarns.clear();
+            final String expectedWylie = converter.toWylie(uni, expectedWarns, true);
+            assertEquals(expectedWylie, converter.toWylieParallel(uni, warns, true, pool, chunkSize));
+            assertEquals(expectedWarns, warns);
+            assertTrue(warns.size() > 0);
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void textBatch() {
+        final String[] titles = { "bka' 'gyur", "gsg", null, "  rgyud sde [spyi'i\n rnam] gzhag", "", "kxa \\u0f40",
+                "bla ma'i rnal 'byor" };
+        final List<String> in = new ArrayList<String>();
+        for (int i = 0; i < 3000; i++)
+            in.add(titles[i % titles.length]);
+        final List<String> expected = new ArrayList<String>();
+        final List<List<String>> expectedWarns = new ArrayList<List<String>>();
+        for (final String s : in) {
+            final List<String> warns = new ArrayList<String>();
+            expected.add(converter.toUnicode(s, warns, true, false));
+            expectedWarns.add(warns);
+        }
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        for (final ForkJoinPool p : Arrays.asList(null, pool)) {
+            final List<List<String>> warns = new ArrayList<List<String>>();
+            assertEquals(expected, converter.toUnicodeBatch(in, warns, true, false, p));
+            assertEquals(expectedWarns, warns);
+        }
+        pool.shutdown();
+        assertEquals(expected.subList(0, 3), converter.toUnicodeBatch(in.subList(0, 3), null, true, false));
+    }
+
+    @Test
+    public void textStructuredWarnings() {
+        final String in = "bsgrubs gda\nka x \\uzzzz [com";
+        final List<String> strings = new ArrayList<String>();
+        final List<Warning> warnings = new ArrayList<Warning>();
+        final String uni = converter.toUnicode(in, strings, false, false);
+        assertEquals(uni, converter.toUnicode(in, false, false, warnings));
+        assertEquals(uni, converter.toUnicode(in, false, false, null));
+        assertEquals(strings.size(), warnings.size());
+        for (int i = 0; i < strings.size(); i++)
+            assertEquals(strings.get(i), warnings.get(i).toString());
+
+        final Warning gda = warnings.get(0);
+        assertEquals(Warning.Code.PROBABLE_SYLLABLE, gda.getCode());
+        assertEquals("line 1: \"gda\": Syllable should probably be \"gad\".", gda.toString());
+        assertEquals("gda", in.substring(gda.getStart(), gda.getEnd()));
+        final Warning x = warnings.get(1);
+        assertEquals(Warning.Code.UNEXPECTED_CHAR, x.getCode());
+        assertEquals(2, x.getLine());
+        assertEquals("x", in.substring(x.getStart(), x.getEnd()));
+        assertEquals(Warning.Code.INVALID_HEX, warnings.get(2).getCode());
+        assertEquals("\\uzzzz", in.substring(warnings.get(2).getStart(), warnings.get(2).getEnd()));
+        assertEquals(Warning.Code.UNFINISHED_COMMENT, warnings.get(3).getCode());
+        assertEquals(-1, warnings.get(3).getStart());
+
+        final List<Warning> wylie = new ArrayList<Warning>();
+        assertEquals("ka\n\\u0f7f", converter.toWylie("ཀ\nཿ", true, wylie));
+        assertEquals(Warning.Code.SIGN_WITHOUT_TOP, wylie.get(0).getCode());
+        assertEquals("line 2: Tibetan sign \\u0f7f needs a top symbol to attach to.", wylie.get(0).toString());
+        assertEquals(2, wylie.get(0).getStart());
+    }
+
+    @Test
+    public void textCallerBuffers() throws IOException {
+        final String in = "  bsgrubs gda [com\nment] \\u0f40 kaH \r\n  bkra shis";
+        final List<Warning> expectedWarns = new ArrayList<Warning>();
+        final String uni = converter.toUnicode(in, true, false, expectedWarns);
+        final List<Warning> warns = new ArrayList<Warning>();
+        final StringBuilder sb = new StringBuilder("> ");
+        assertEquals(uni.length(), converter.toUnicode(new StringBuilder(in), sb, true, false, warns));
+        assertEquals("> " + uni, sb.toString());
+        assertEquals(expectedWarns.toString(), warns.toString());
+        final StringWriter out = new StringWriter();
+        assertEquals(uni.length(), converter.toUnicode(in, out, true, false, null));
+        assertEquals(uni, out.toString());
+
+        final char[] chars = ("<<" + in + ">>").toCharArray();
+        final char[] buf = new char[uni.length() + 1];
+        warns.clear();
+        assertEquals(uni.length(), converter.toUnicode(chars, 2, in.length(), buf, 1, true, false, warns));
+        assertEquals(uni, new String(buf, 1, uni.length()));
+        assertEquals(expectedWarns.toString(), warns.toString());
+        try {
+            converter.toUnicode(chars, 2, in.length(), buf, 2, true, false, null);
+            assertTrue(false);
+        } catch (BufferOverflowException e) {
+        }
+
+        final String wylie = converter.toWylie(uni, true, null);
+        final char[] uniChars = uni.toCharArray();
+        final char[] wylieBuf = new char[wylie.length()];
+        assertEquals(wylie.length(), converter.toWylie(uniChars, 0, uniChars.length, wylieBuf, 0, true, null));
+        assertEquals(wylie, new String(wylieBuf));
+        sb.setLength(0);
+        assertEquals(wylie.length(), converter.toWylie(CharBuffer.wrap(uniChars), sb, true, null));
+        assertEquals(wylie, sb.toString());
+
+        // the same in UTF-8, Tibetan is 3 bytes per char
+        final byte[] bytes = ("<<" + in + ">>").getBytes(StandardCharsets.UTF_8);
+        final byte[] uniBytes = uni.getBytes(StandardCharsets.UTF_8);
+        final byte[] byteBuf = new byte[uniBytes.length + 1];
+        assertEquals(uniBytes.length, converter.toUnicode(bytes, 2, bytes.length - 4, byteBuf, 1, true, false, null));
+        assertEquals(uni, new String(byteBuf, 1, uniBytes.length, StandardCharsets.UTF_8));
+        final ByteBuffer wylieBytes = ByteBuffer.allocate(wylie.length());
+        assertEquals(wylie.length(), converter.toWylie(ByteBuffer.wrap(uniBytes), wylieBytes, true, null));
+        assertEquals(wylie, new String(wylieBytes.array(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void textOffsetMap() {
+        final OffsetMap offsets = new OffsetMap();
+        // the sloppy x becomes ྾ before the conversion
+        assertEquals("བླ་\u0fbe་མ", converter.toUnicode("bla x ma", true, false, null, offsets));
+        assertEquals(3, offsets.size());
+        assertEquals(8, offsets.sourceOffset(2));
+        assertEquals(6, offsets.targetOffset(2));
+        assertEquals(3, offsets.toTarget(4));
+        assertEquals(5, offsets.toTarget(6));
+        assertEquals(6, offsets.toSource(5));
+        assertEquals(8, offsets.toSource(6));
+
+        // the same offsets relative to the buffers
+        final char[] chars = "..bla x ma".toCharArray();
+        final char[] buf = new char[10];
+        assertEquals(6, converter.toUnicode(chars, 2, 8, buf, 1, true, false, null, offsets));
+        assertEquals(3, offsets.size());
+        assertEquals(6, offsets.toSource(5));
+
+        // the initial spaces of DTS are removed before its conversion
+        final EwtsConverter dts = new EwtsConverter(true, true, false, true, EwtsConverter.Mode.DTS);
+        assertEquals("བླ་མའི", dts.toUnicode("  bla-maḥi", false, false, null, offsets));
+        assertEquals(2, offsets.toSource(0));
+        assertEquals(5, offsets.toSource(2));
+        assertEquals(2, offsets.toTarget(5));
+
+        // ཱི is decomposed before the conversion to EWTS
+        assertEquals("kI_kha", converter.toWylie("ཀཱི ཁ", true, null, offsets));
+        assertEquals(3, offsets.toTarget(3));
+        assertEquals(4, offsets.toSource(6));
+    }
+
+    @Test
+    public void textSinglePassNormalization() {
+        // the same as the normalizations one after the other, including when
+        // lower casing is not char by char (Σ) and the chain is used instead
+        final EwtsConverter alalc = new EwtsConverter(true, true, false, true, EwtsConverter.Mode.ALALC);
+        for (final String in : new String[] { " Bla maʼi rnal ʼbyor", "ʼJam dbyangs mkhyen brtseʼi dbang po",
+                "Bka Σ ʼgyur" }) {
+            final String ewts = EwtsConverter.normalizeForLenientSearch(
+                    EwtsConverter.normalizeSloppyWylie(TransConverter.alalcToEwts(in).trim()));
+            assertEquals(converter.toUnicode(ewts, null, false, false), alalc.toUnicode(in, null, true, true));
+        }
+        // precomposed and combining diacritics, and ḥ that DTS and ALA-LC read
+        // differently
+        assertEquals("ཤ་ང་བཱ", alalc.toUnicode("\u015ba \u1e45a b\u0101"));
+        assertEquals("ཤ་ང་བཱ", alalc.toUnicode("s\u0301a n\u0307a ba\u0304"));
+        assertEquals("ཀཿ", alalc.toUnicode("ka\u1e25"));
+        final EwtsConverter dts = new EwtsConverter(true, true, false, true, EwtsConverter.Mode.DTS);
+        assertEquals("ཀའ", dts.toUnicode("ka\u1e25"));
+    }
+
+    @Test
+    public void textValidate() {
+        final String in = "bsgrubs gda [gsg] pa'i\ndgs bkra";
+        final List<Warning> expected = new ArrayList<Warning>();
+        converter.toUnicode(in, false, false, expected);
+        final List<Warning> warnings = new ArrayList<Warning>();
+        final Validation v = converter.validate(in, false, false, false, warnings);
+        assertEquals(5, v.getSyllables());
+        assertEquals(2, v.getInvalidCount());
+        assertTrue(v.isComplete() && !v.isValid() && v.isValid(0) && !v.isValid(1) && !v.isValid(3));
+        assertEquals(expected.toString(), warnings.toString());
+
+        final Validation first = converter.validate(in, false, false, true, null);
+        assertTrue(!first.isComplete() && first.getSyllables() == 2 && first.getInvalidCount() == 1);
+        assertTrue(converter.validate("bkra shis bde legs").isValid());
+
+        // long strings are checked through a cache
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++)
+            sb.append(in).append('\n');
+        final Validation many = converter.validate(sb.toString());
+        assertEquals(2500, many.getSyllables());
+        assertEquals(1000, many.getInvalidCount());
+        assertTrue(!many.isValid(2498) && many.isValid(2499));
+    }
+
+    @Test
+    public void textSharedConverters() throws Exception {
+        final TsekbarCache cache = new TsekbarCache(64);
+        final EwtsConverter[] converters = { converter,
+                new EwtsConverter(true, false, false, true, EwtsConverter.Mode.EWTS, cache),
+                new EwtsConverter(true, true, false, true, EwtsConverter.Mode.DTS, cache),
+                new EwtsConverter(false, false, false, false, EwtsConverter.Mode.ALALC, cache) };
+        final String[] inputs = { "bsgrubs pa'i gsg [com\nment] \\u0f40 kaH \r\n  bkra shis\n\nSha ba dgs",
+                "Ḥdul-ba rnam-par-ḥbyed-pa gʹya tʹsa Ri-gi-ā-ra", "bka' 'gyur rgyud sde spyi'i rnam gzhag kxa",
+                "<<n+yA~M g.yag kl-i ba_cang /", "mNyon mNges gTso rDza padma" };
+
+        // what each thread should get for each of its tasks, computed in this thread
+        final int tasks = 3 * converters.length * inputs.length;
+        final String[] expected = new String[tasks];
+        for (int k = 0; k < tasks; k++)
+            expected[k] = sharedTask(converters, inputs, k);
+
+        final int threads = 64;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                int errors = 0;
+                for (int i = 0; i < 200; i++) {
+                    final int k = (first + i) % tasks;
+                    if (!expected[k].equals(sharedTask(converters, inputs, k)))
+                        errors++;
+                }
+                return errors;
+            }));
+        }
+        start.countDown();
+        int errors = 0;
+        for (final Future<Integer> result : results)
+            errors += result.get();
+        executor.shutdown();
+        assertEquals(0, errors);
+    }
+
+    // one of the conversions of textSharedConverters(), with its warnings
+    private static String sharedTask(final EwtsConverter[] converters, final String[] inputs, final int k) {
+        final EwtsConverter conv = converters[k % converters.length];
+        final String in = inputs[(k / converters.length) % inputs.length];
+        final List<String> warns = new ArrayList<String>();
+        switch (k / (converters.length * inputs.length)) {
+        case 0:
+            final String uni = conv.toUnicode(in, warns, true, false);
+            return uni + warns + conv.toWylie(uni, warns, true) + warns;
+        case 1:
+            return conv.toUnicode(in, warns, false, true) + warns + conv.validate(in).getInvalidSyllables();
+        default:
+            return TransConverter.ewtsToAlalc(in, true) + TransConverter.alalcToEwts(in) + TransConverter.dtsToEwts(in)
+                    + EwtsConverter.normalizeSloppyWylie(in);
+        }
+    }
+
+    @Test
+    public void textToWylie() {
+        assertTrue(converter.toWylie("བཀྲ་ཤིས་ བདེ་ལེགས། abc ཀ").equals("bkra shis _bde legs/[ abc ]ka"));
+        assertTrue(converter.toWylie("བཀྲ་ཤིས་ བདེ་ལེགས། abc ཀ", null, false).equals("bkra shis _bde legs/ abc ka"));
+        assertTrue(converter.toWylie("ཀ abc [x] ཁ\nd").equals("ka[ abc \\[x\\] ]kha\n[d]"));
+        assertTrue(converter.toWylie("ཧཱུྃ༔").equals("hU~M:"));
+    }
+
     @Test
     public void textDtsAlalcToEwts() {
         EwtsConverter converterAlalc = new EwtsConverter(false, false, false, false, EwtsConverter.Mode.ALALC);
@@ -49,6 +416,9 @@ public class ConversionTest {
         assertTrue(converterAlalc.toUnicode("Ri-gi-ā-ra").equals("རི་གི་ཨཱ་ར"));
         assertTrue(converterAlalc.toUnicode("Ri-gi-i-ra").equals("རི་གི་ཨི་ར"));
         assertTrue(converterAlalc.toUnicode("gʹya tʹsa").equals("གཡ་ཏྶ"));
+        // the longest sequence of combining marks is converted
+        assertTrue(TransConverter.alalcToEwts("r\u0325\u0304 r\u0325").equals("r-I r-i"));
+        assertTrue(TransConverter.dtsToEwts("Ṛ\u0304 ḷ\u0304 ṛ").equals("r-I l-i r-i"));
     }
 
     @Test
@@ -56,6 +426,50 @@ public class ConversionTest {
         assertTrue(EwtsConverter.normalizeSloppyWylie("Mi la lHan Mi kaHthog 'uM Ma m ").equals("mi la lhan mi kaHthog 'uM ma ma "));
     }
    
+    // the regex based normalizations that normalizeSloppyWylie() and
+    // normalizeForLenientSearch() must reproduce
+    public static String legacyNormalizeSloppyWylie(String str) {
+        str = StringUtils.replaceEach(str, array(NormalizationTables.m_sloppy_from),
+                array(NormalizationTables.m_sloppy_to));
+        str = str.replaceAll("(^|[^aeiouAIU])H", "$1h");
+        str = str.replaceAll("(^|[^aeiouAIU~])M", "$1m");
+        str = str.replace("Sh", "ZZZ");
+        str = str.replace("S", "s");
+        str = str.replace("ZZZ", "Sh");
+        return str;
+    }
+
+    public static String legacyNormalizeForLenientSearch(String str) {
+        str = str.replaceAll("([aeiouAIU])H", "$1q");
+        str = str.replaceAll("([aeiouAIU])M", "$1!");
+        str = str.toLowerCase();
+        str = StringUtils.replaceEach(str, array(NormalizationTables.m_lenient_from),
+                array(NormalizationTables.m_lenient_to));
+        return str;
+    }
+
+    private static String[] array(List<String> strings) {
+        return strings.toArray(new String[0]);
+    }
+
+    @Test
+    public void textNormalizeDifferential() {
+        final List<String> pieces = new ArrayList<String>();
+        pieces.addAll(NormalizationTables.m_sloppy_from);
+        pieces.addAll(NormalizationTables.m_lenient_from);
+        pieces.addAll(Arrays.asList("H", "M", "S", "Sh", "SH", "h", "a", "I", "~", "~M", "q", "!", " ", "Z", "ZZZ",
+                "kaH", "OM", "İ", "Σ", "\ud83d\ude00", "bsgrubs", "pa'i"));
+        final Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            final StringBuilder sb = new StringBuilder();
+            for (int j = random.nextInt(12); j > 0; j--)
+                sb.append(pieces.get(random.nextInt(pieces.size())));
+            final String in = sb.toString();
+            assertEquals(in, legacyNormalizeSloppyWylie(in), EwtsConverter.normalizeSloppyWylie(in));
+            assertEquals(in, legacyNormalizeForLenientSearch(in), EwtsConverter.normalizeForLenientSearch(in));
+        }
+    }
+
     @Test
     public void textConvertLenient() {
         assertTrue(EwtsConverter.normalizeForLenientSearch("Mi la lHan Mi kaHthog kaH thog 'uM Ma m ").equals("mi la lhan mi kaHthog kaHthog 'uM ma m "));
@@ -77,6 +491,11 @@ public class ConversionTest {
         assertTrue(TransConverter.ewtsToAlalc("dwa", true).equals("dwa"));
         assertTrue(TransConverter.ewtsToAlalc("bka' 'gyur", true).equals("bkaʼ ʼgyur"));
         assertTrue(TransConverter.ewtsToAlalc("par gzhi 1., par thengs 2.", true).equals("par gzhi 1 par thengs 2"));
+        // a letter after a dot between letters does not start another one
+        assertTrue(TransConverter.ewtsToAlalc("k.s.m .ga", false).equals("kʹsm ga"));
+        // directly from Unicode
+        assertTrue(converter.toAlalc("བཀའ་འགྱུར། གཡག").equals("bkaʼ ʼgyur gʹyag"));
+        assertTrue(converter.toAlalc("ཀ abc", false, null).equals(TransConverter.ewtsToAlalc(converter.toWylie("ཀ abc", null, false), true)));
         assertTrue(TransConverter.dtsToEwts("ša śa").equals("sha sha"));
         assertTrue(TransConverter.alalcToEwts("ā").equals("A"));
     }